@@ -3,18 +3,38 @@ package fr.bobinho.bcrate;
 import co.aikar.commands.PaperCommandManager;
 import com.google.common.collect.ImmutableList;
 import fr.bobinho.bcrate.api.command.BCommand;
+import fr.bobinho.bcrate.api.location.BSpatialIndex;
 import fr.bobinho.bcrate.api.logger.BLogger;
 import fr.bobinho.bcrate.api.setting.BSetting;
+import fr.bobinho.bcrate.api.setting.BSettingWatcher;
+import fr.bobinho.bcrate.api.setting.BSettingWriter;
+import fr.bobinho.bcrate.util.claim.ClaimManager;
+import fr.bobinho.bcrate.util.crate.CrateDefinition;
 import fr.bobinho.bcrate.util.crate.CrateManager;
+import fr.bobinho.bcrate.util.crate.audit.CrateAudit;
+import fr.bobinho.bcrate.util.key.Key;
 import fr.bobinho.bcrate.util.key.KeyManager;
 import fr.bobinho.bcrate.util.player.PlayerManager;
+import fr.bobinho.bcrate.util.player.storage.PlayerJournal;
+import fr.bobinho.bcrate.util.player.storage.PlayerStorage;
+import fr.bobinho.bcrate.util.player.storage.PlayerStorageType;
 import fr.bobinho.bcrate.util.prize.PrizeManager;
+import fr.bobinho.bcrate.util.prize.stock.StockManager;
+import fr.bobinho.bcrate.util.tag.Tag;
 import fr.bobinho.bcrate.util.tag.TagManager;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.reflections.Reflections;
 
 import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * Core of the plugin
@@ -25,11 +45,16 @@ public final class BCrateCore extends JavaPlugin {
      * Fields
      */
     private static final BLogger bLogger = new BLogger(BCrateCore.class.getSimpleName());
+    private static BSetting configSetting;
     private static BSetting keySetting;
     private static BSetting tagSetting;
-    private static BSetting playerSetting;
+    private static PlayerStorage playerStorage;
+    private static PlayerJournal playerJournal;
     private static BSetting crateSetting;
     private static BSetting langSetting;
+    private static BSetting claimSetting;
+    private static BSetting stockSetting;
+    private static boolean loaded;
 
     /**
      * Gets the plugin
@@ -49,6 +74,15 @@ public final class BCrateCore extends JavaPlugin {
         return bLogger;
     }
 
+    /**
+     * Gets the config setting
+     *
+     * @return the config setting
+     */
+    public static BSetting getConfigSetting() {
+        return configSetting;
+    }
+
     /**
      * Gets the key setting
      *
@@ -68,12 +102,21 @@ public final class BCrateCore extends JavaPlugin {
     }
 
     /**
-     * Gets the player setting
+     * Gets the player storage
+     *
+     * @return the player storage
+     */
+    public static PlayerStorage getPlayerStorage() {
+        return playerStorage;
+    }
+
+    /**
+     * Gets the player journal
      *
-     * @return the player setting
+     * @return the player journal, null if the journal is disabled
      */
-    public static BSetting getPlayerSetting() {
-        return playerSetting;
+    public static PlayerJournal getPlayerJournal() {
+        return playerJournal;
     }
 
     /**
@@ -94,6 +137,24 @@ public final class BCrateCore extends JavaPlugin {
         return langSetting;
     }
 
+    /**
+     * Gets the claim setting
+     *
+     * @return the claim setting
+     */
+    public static BSetting getClaimSetting() {
+        return claimSetting;
+    }
+
+    /**
+     * Gets the stock setting
+     *
+     * @return the stock setting
+     */
+    public static BSetting getStockSetting() {
+        return stockSetting;
+    }
+
     /**
      * Enables and initializes the plugin
      */
@@ -101,20 +162,182 @@ public final class BCrateCore extends JavaPlugin {
     public void onEnable() {
         bLogger.info("Loading the plugin...");
 
-        keySetting = new BSetting("key");
-        tagSetting = new BSetting("tag");
-        playerSetting = new BSetting("player");
-        crateSetting = new BSetting("crate");
-        langSetting = new BSetting("lang");
+        configSetting = new BSetting("config");
+
+        //Starts the writer, without write-behind each save is written immediately but still off the main thread
+        BSetting.setBackups(configSetting.isInt("storage.backups").orElse(3));
+        BSetting.setBackupInterval(configSetting.isInt("storage.backup-interval").orElse(3600) * 1000L);
+        if (configSetting.isBoolean("storage.write-behind.enabled").orElse(false)) {
+            BSettingWriter.start(configSetting.isInt("storage.write-behind.interval").orElse(100), configSetting.isInt("storage.write-behind.threshold").orElse(64));
+        } else {
+            BSettingWriter.startImmediate();
+        }
+
+        playerStorage = configSetting.isString("storage.player.type").flatMap(PlayerStorageType::get).orElse(PlayerStorageType.YAML).create();
+
+        if (configSetting.isBoolean("crate.audit.enabled").orElse(false)) {
+            CrateAudit.start();
+        }
+
+        if (configSetting.isBoolean("storage.journal.enabled").orElse(false)) {
+            playerJournal = new PlayerJournal(configSetting.isInt("storage.journal.sync-interval").orElse(50));
+        }
+
+        //Parses the settings and prepares the players in parallel, nothing here touches the server
+        long start = System.nanoTime();
+        AtomicInteger threadId = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())), runnable -> {
+            Thread thread = new Thread(runnable, "BCrate-Startup-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        CompletableFuture<Map<String, Key>> keys = CompletableFuture.supplyAsync(timed("keys", () -> {
+            keySetting = new BSetting("key");
+            return KeyManager.parse(keySetting);
+        }), pool);
+        CompletableFuture<Map<String, Tag>> tags = CompletableFuture.supplyAsync(timed("tags", () -> {
+            tagSetting = new BSetting("tag");
+            return TagManager.parse(tagSetting);
+        }), pool);
+        CompletableFuture<List<CrateDefinition>> crates = CompletableFuture.supplyAsync(timed("crates", () -> {
+            crateSetting = new BSetting("crate");
+            return CrateManager.parse(crateSetting);
+        }), pool);
+        CompletableFuture<BSetting> lang = CompletableFuture.supplyAsync(timed("lang", () -> langSetting = new BSetting("lang")), pool);
+        CompletableFuture<BSetting> claims = CompletableFuture.supplyAsync(timed("claims", () -> claimSetting = new BSetting("claim")), pool);
+        CompletableFuture<BSetting> stocks = CompletableFuture.supplyAsync(timed("stocks", () -> stockSetting = new BSetting("stock")), pool);
+        CompletableFuture<Boolean> players = CompletableFuture.supplyAsync(timed("players", () -> {
+
+            //If the player storage could not be opened, no need to continue
+            if (!openPlayerStorage()) {
+                return false;
+            }
+
+            PlayerManager.prepare();
+            return true;
+        }), pool);
+
+        try {
+            CompletableFuture.allOf(keys, tags, crates, lang, claims, stocks, players).join();
+        } finally {
+            pool.shutdown();
+        }
+
+        //Checks if the player storage could not be opened, the plugin can not run without its players
+        if (!players.join()) {
+            bLogger.error("Disabling the plugin, the player storage could not be opened!");
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+
+        bLogger.info("Parsed all data in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
 
-        KeyManager.register();
-        TagManager.register();
-        PlayerManager.register();
-        CrateManager.register();
-        PrizeManager.register();
+        //Builds everything touching the server on the main thread, keys and tags before the crates using them
+        timed("build", () -> {
+            BSpatialIndex.register();
+            KeyManager.register(keys.join());
+            TagManager.register(tags.join());
+            PlayerManager.register();
+            StockManager.register();
+            CrateManager.register(crates.join());
+            PrizeManager.register();
+            ClaimManager.register();
 
-        //Registers commands
-        registerCommands();
+            //Registers commands
+            registerCommands();
+            return null;
+        }).get();
+
+        //Watches the files edited outside the game
+        if (configSetting.isBoolean("reload.watch.enabled").orElse(false)) {
+            registerWatcher(configSetting.isInt("reload.watch.debounce").orElse(500));
+        }
+
+        loaded = true;
+        bLogger.info("Loaded the plugin in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+    }
+
+    /**
+     * Wraps a startup phase to log its duration
+     *
+     * @param phase the phase name
+     * @param task  the phase task
+     * @param <T>   the phase result type
+     * @return the wrapped phase task
+     */
+    private static @Nonnull <T> Supplier<T> timed(@Nonnull String phase, @Nonnull Supplier<T> task) {
+        return () -> {
+            long start = System.nanoTime();
+            T result = task.get();
+
+            bLogger.info("Loaded " + phase + " in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+            return result;
+        };
+    }
+
+    /**
+     * Opens the player storage, falling back to the yaml storage if it could not be opened
+     * There is no fallback once the players are in the database, the yaml storage would hide them.
+     *
+     * @return true if a player storage is opened, false otherwise
+     */
+    private static boolean openPlayerStorage() {
+        try {
+            playerStorage.open();
+            return true;
+        } catch (IllegalStateException e) {
+
+            //Checks if the players are already in the database
+            if (new File(getInstance().getDataFolder(), "player.db").exists()) {
+                bLogger.error("Could not open the " + configSetting.isString("storage.player.type").orElse("yaml") + " player storage, the players are in the database so there is no fallback!", e);
+                playerStorage = null;
+                return false;
+            }
+
+            bLogger.error("Could not open the " + configSetting.isString("storage.player.type").orElse("yaml") + " player storage, falling back to the yaml storage!", e);
+
+            playerStorage = PlayerStorageType.YAML.create();
+            playerStorage.open();
+            return true;
+        }
+    }
+
+    /**
+     * Registers the watcher of the key, tag, crate and lang files
+     * Each file is parsed alone when it changes, then swapped in on the main thread.
+     *
+     * @param debounce the delay in milliseconds without change before reloading a file
+     */
+    private static void registerWatcher(int debounce) {
+        BSettingWatcher.watch(keySetting, read -> {
+            Map<String, Key> parsed = KeyManager.parse(read);
+
+            return () -> {
+                KeyManager.apply(parsed);
+                CrateManager.relink();
+            };
+        });
+        BSettingWatcher.watch(tagSetting, read -> {
+            Map<String, Tag> parsed = TagManager.parse(read);
+
+            return () -> {
+                TagManager.apply(parsed);
+                CrateManager.relink();
+            };
+        });
+        BSettingWatcher.watch(crateSetting, read -> {
+            List<CrateDefinition> parsed = CrateManager.parse(read);
+            CrateManager.validate(parsed);
+
+            return () -> CrateManager.apply(parsed);
+        });
+
+        //Notifications read the lang setting on each use, swapping it is enough
+        BSettingWatcher.watch(langSetting, read -> () -> {
+        });
+
+        BSettingWatcher.start(debounce);
     }
 
     /**
@@ -123,11 +346,37 @@ public final class BCrateCore extends JavaPlugin {
     @Override
     public void onDisable() {
         bLogger.info("Unloading the plugin...");
+
+        //If the plugin did not load, nothing is registered so there is nothing to save
+        if (!loaded) {
+            CrateAudit.stop();
+            BSettingWriter.stop();
+            if (playerJournal != null) {
+                playerJournal.close(false);
+            }
+            return;
+        }
+        loaded = false;
+
+        BSettingWatcher.stop();
+        BSpatialIndex.unregister();
         KeyManager.unregister();
         TagManager.unregister();
         PlayerManager.unregister();
         CrateManager.unregister();
         PrizeManager.unregister();
+        ClaimManager.unregister();
+        StockManager.unregister();
+        CrateAudit.stop();
+        boolean written = playerStorage != null && playerStorage.close();
+
+        //Writes all pending saves
+        written = BSettingWriter.stop() && written;
+
+        //Once all changes are written, the journal is no longer needed
+        if (playerJournal != null) {
+            playerJournal.close(written);
+        }
         //TODO: Reset and correct data is required
     }
 
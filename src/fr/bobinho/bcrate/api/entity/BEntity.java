@@ -1,34 +1,53 @@
 package fr.bobinho.bcrate.api.entity;
 
 import fr.bobinho.bcrate.api.location.BLocation;
+import fr.bobinho.bcrate.api.location.BSpatialIndex;
 import fr.bobinho.bcrate.api.metadata.BMetadata;
 import fr.bobinho.bcrate.api.packet.BPacket;
 import fr.bobinho.bcrate.api.renderer.BRenderer;
 import fr.bobinho.bcrate.api.validate.BValidate;
 import net.minecraft.network.protocol.game.*;
 import net.minecraft.network.syncher.DataWatcher;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.MathHelper;
 import net.minecraft.world.entity.Entity;
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 
 /**
  * Bobinho entity library
+ * <p>
+ * The position last sent to the viewers is kept in the encoding of the relative move packets (1/4096 block),
+ * so small teleports are sent as relative moves, a full teleport being only sent for large jumps
+ * or every few moves to resync the viewers.
+ * <p>
+ * The metadata changes are only marked dirty, then flushed by the next render as one packet holding
+ * the changed values only, at most once by tick.
  */
 public class BEntity<T extends BEntity<T>> {
 
     /**
      * Fields
      */
+    private static final int RESYNC_INTERVAL = 100;
     private final UUID uuid;
     private final Entity entity;
     private final BRenderer renderer;
     private final BMetadata metadata = new BMetadata();
-
+    private long sentX;
+    private long sentY;
+    private long sentZ;
+    private byte sentYaw;
+    private byte sentPitch;
+    private int movesSinceSync;
+    private boolean metadataDirty;
+    private int metadataFlushTick = -1;
 
     /**
      * Creates a new entity
@@ -46,6 +65,7 @@ public class BEntity<T extends BEntity<T>> {
         this.entity.r(location.getYaw());
         this.entity.s(location.getPitch());
         this.renderer = new BRenderer(location, this::show, this::hide);
+        setSent(location);
     }
 
     /**
@@ -65,6 +85,7 @@ public class BEntity<T extends BEntity<T>> {
         this.entity.r(location.getYaw());
         this.entity.s(location.getPitch());
         this.renderer = new BRenderer(location, this::show, this::hide);
+        setSent(location);
     }
 
     /**
@@ -132,6 +153,55 @@ public class BEntity<T extends BEntity<T>> {
         BPacket.send(new PacketPlayOutEntityMetadata(getId(), this.getEntity().an().c()), getRenderer().getShownViewersAsPlayer());
     }
 
+    /**
+     * Marks the entity metadata dirty, the changes being sent by the next render
+     */
+    protected final void markMetadataDirty() {
+        metadataDirty = true;
+    }
+
+    /**
+     * Sends the changed metadata values to the viewers, at most once by tick
+     * A second flush in the same tick is left to the next render.
+     */
+    private void flushMetadata() {
+
+        //If nothing changed or the changes were already sent in this tick, no need to continue
+        if (!metadataDirty || metadataFlushTick == MinecraftServer.currentTick) {
+            return;
+        }
+
+        List<Player> players = renderer.getShownViewersAsPlayer();
+
+        //If players are empty, no need to continue, new viewers receive the whole metadata when shown
+        if (players.isEmpty()) {
+            return;
+        }
+
+        metadataFlushTick = MinecraftServer.currentTick;
+        sendMetadataChanges(players);
+    }
+
+    /**
+     * Sends the changed metadata values to players
+     *
+     * @param players the players
+     */
+    private void sendMetadataChanges(@Nonnull List<Player> players) {
+
+        //If nothing changed, no need to continue
+        if (!metadataDirty) {
+            return;
+        }
+
+        List<DataWatcher.c<?>> changed = entity.an().b();
+        metadataDirty = false;
+
+        if (changed != null && !changed.isEmpty() && !players.isEmpty()) {
+            BPacket.send(new PacketPlayOutEntityMetadata(getId(), changed), players);
+        }
+    }
+
     /**
      * Sets the entity invisible status
      *
@@ -193,10 +263,16 @@ public class BEntity<T extends BEntity<T>> {
             return;
         }
 
+        //Sends the pending changes to the viewers already seeing the entity, the new ones get the whole metadata
+        List<Player> viewers = new ArrayList<>(renderer.getShownViewersAsPlayer());
+        viewers.removeAll(players);
+        sendMetadataChanges(viewers);
+
         //Sends the show packet
         BPacket.send(new PacketPlayOutSpawnEntity(entity), players);
         //BPacket.send(new PacketPlayOutEntityMetadata(entity.aj(), List.of(entity.an())), players);
-        BPacket.send(new PacketPlayOutEntityMetadata(getId(), this.getEntity().an().c()), getRenderer().getShownViewersAsPlayer());
+        BPacket.send(new PacketPlayOutEntityMetadata(getId(), this.getEntity().an().c()), players);
+
         //Triggers the on show
         onShow(players);
     }
@@ -205,7 +281,9 @@ public class BEntity<T extends BEntity<T>> {
      * Shows the entity
      */
     public final void show() {
-        show((List<Player>) Bukkit.getOnlinePlayers().stream().filter(player -> BLocation.canSee(entity.getBukkitEntity().getLocation(), player.getLocation())).toList());
+        Location location = entity.getBukkitEntity().getLocation();
+
+        show(BSpatialIndex.getNearby(location, BLocation.getViewRange(Objects.requireNonNull(location.getWorld()))));
     }
 
     /**
@@ -232,7 +310,9 @@ public class BEntity<T extends BEntity<T>> {
      * Hides the entity
      */
     public final void hide() {
-        hide((List<Player>) Bukkit.getOnlinePlayers().stream().filter(player -> BLocation.canSee(entity.getBukkitEntity().getLocation(), player.getLocation())).toList());
+        Location location = entity.getBukkitEntity().getLocation();
+
+        hide(BSpatialIndex.getNearby(location, BLocation.getViewRange(Objects.requireNonNull(location.getWorld()))));
     }
 
     /**
@@ -240,6 +320,7 @@ public class BEntity<T extends BEntity<T>> {
      */
     public final T render() {
         renderer.render();
+        flushMetadata();
 
         //Overridable method
         onTick();
@@ -341,21 +422,100 @@ public class BEntity<T extends BEntity<T>> {
         this.entity.s(location.getPitch());
         renderer.setLocation(location);
 
-        //If players are empty, no need to continue
-        if (renderer.getShownViewersAsPlayer().isEmpty()) {
+        long x = encode(location.getX());
+        long y = encode(location.getY());
+        long z = encode(location.getZ());
+        byte yaw = toAngle(location.getYaw());
+        byte pitch = toAngle(location.getPitch());
+
+        //If players are empty, no need to continue, new viewers are spawned at the current position
+        List<Player> players = renderer.getShownViewersAsPlayer();
+        if (players.isEmpty()) {
+            setSent(x, y, z, yaw, pitch);
             return;
         }
 
-        //Sends teleport packet
-        BPacket.send(new PacketPlayOutEntityTeleport(entity), renderer.getShownViewersAsPlayer());
+        boolean moved = x != sentX || y != sentY || z != sentZ;
+        boolean looked = yaw != sentYaw || pitch != sentPitch;
+
+        //Sends a full teleport for large jumps and periodically, a relative move otherwise
+        if (movesSinceSync >= RESYNC_INTERVAL || !fitsRelative(x - sentX) || !fitsRelative(y - sentY) || !fitsRelative(z - sentZ)) {
+            BPacket.send(new PacketPlayOutEntityTeleport(entity), players);
+            movesSinceSync = 0;
+        } else if (moved && looked) {
+            BPacket.send(new PacketPlayOutEntity.PacketPlayOutRelEntityMoveLook(getId(), (short) (x - sentX), (short) (y - sentY), (short) (z - sentZ), yaw, pitch, false), players);
+            movesSinceSync++;
+        } else if (moved) {
+            BPacket.send(new PacketPlayOutEntity.PacketPlayOutRelEntityMove(getId(), (short) (x - sentX), (short) (y - sentY), (short) (z - sentZ), false), players);
+            movesSinceSync++;
+        } else if (looked) {
+            BPacket.send(new PacketPlayOutEntity.PacketPlayOutEntityLook(getId(), yaw, pitch, false), players);
+            movesSinceSync++;
+        }
+        setSent(x, y, z, yaw, pitch);
 
         //If special rotation needed
         if (rotation) {
-            byte yaw = (byte) (location.getYaw() * 256.0F / 360.0F);
 
             //Sets head rotation.
-            BPacket.send(new PacketPlayOutEntityHeadRotation(entity, yaw), renderer.getShownViewersAsPlayer());
+            BPacket.send(new PacketPlayOutEntityHeadRotation(entity, yaw), players);
         }
     }
 
+    /**
+     * Encodes a coordinate as in the relative move packets
+     *
+     * @param coordinate the coordinate
+     * @return the encoded coordinate
+     */
+    private static long encode(double coordinate) {
+        return Math.round(coordinate * 4096.0D);
+    }
+
+    /**
+     * Encodes an angle as in the entity packets
+     *
+     * @param angle the angle in degrees
+     * @return the encoded angle
+     */
+    private static byte toAngle(float angle) {
+        return (byte) MathHelper.d(angle * 256.0F / 360.0F);
+    }
+
+    /**
+     * Checks if an encoded delta fits in a relative move packet
+     *
+     * @param delta the encoded delta
+     * @return true if the delta fits, false otherwise
+     */
+    private static boolean fitsRelative(long delta) {
+        return delta >= Short.MIN_VALUE && delta <= Short.MAX_VALUE;
+    }
+
+    /**
+     * Sets the position last sent to the viewers
+     *
+     * @param location the location
+     */
+    private void setSent(@Nonnull Location location) {
+        setSent(encode(location.getX()), encode(location.getY()), encode(location.getZ()), toAngle(location.getYaw()), toAngle(location.getPitch()));
+    }
+
+    /**
+     * Sets the position last sent to the viewers
+     *
+     * @param x     the encoded x coordinate
+     * @param y     the encoded y coordinate
+     * @param z     the encoded z coordinate
+     * @param yaw   the encoded yaw
+     * @param pitch the encoded pitch
+     */
+    private void setSent(long x, long y, long z, byte yaw, byte pitch) {
+        this.sentX = x;
+        this.sentY = y;
+        this.sentZ = z;
+        this.sentYaw = yaw;
+        this.sentPitch = pitch;
+    }
+
 }
\ No newline at end of file
@@ -2,9 +2,7 @@ package fr.bobinho.bcrate.api.entity.base;
 
 import fr.bobinho.bcrate.api.entity.BEntityType;
 import fr.bobinho.bcrate.api.entity.type.BArmoredEntity;
-import fr.bobinho.bcrate.api.packet.BPacket;
 import net.minecraft.core.Vector3f;
-import net.minecraft.network.protocol.game.PacketPlayOutEntityMetadata;
 import net.minecraft.world.entity.decoration.EntityArmorStand;
 import org.bukkit.Location;
 
@@ -12,6 +10,8 @@ import javax.annotation.Nonnull;
 
 /**
  * Bobinho armor stand entity library
+ * <p>
+ * The pose setters only mark the metadata dirty, the next render sending all changed poses at once.
  */
 public class BArmorStandEntity extends BArmoredEntity<BArmorStandEntity> {
 
@@ -38,7 +38,7 @@ public class BArmorStandEntity extends BArmoredEntity<BArmorStandEntity> {
      */
     public @Nonnull BArmorStandEntity setHeadPose(float x, float y, float z) {
         getEntity(EntityArmorStand.class).a(new Vector3f(x, y, z));
-        BPacket.send(new PacketPlayOutEntityMetadata(getId(), this.getEntity().an().c()), getRenderer().getShownViewersAsPlayer());
+        markMetadataDirty();
         return this;
     }
 
@@ -52,7 +52,7 @@ public class BArmorStandEntity extends BArmoredEntity<BArmorStandEntity> {
      */
     public @Nonnull BArmorStandEntity setRightArmPose(float x, float y, float z) {
         getEntity(EntityArmorStand.class).d(new Vector3f(x, y, z));
-        BPacket.send(new PacketPlayOutEntityMetadata(getId(), this.getEntity().an().c()), getRenderer().getShownViewersAsPlayer());
+        markMetadataDirty();
         return this;
     }
 
@@ -66,7 +66,7 @@ public class BArmorStandEntity extends BArmoredEntity<BArmorStandEntity> {
      */
     public @Nonnull BArmorStandEntity setLeftArmPose(float x, float y, float z) {
         getEntity(EntityArmorStand.class).c(new Vector3f(x, y, z));
-        BPacket.send(new PacketPlayOutEntityMetadata(getId(), this.getEntity().an().c()), getRenderer().getShownViewersAsPlayer());
+        markMetadataDirty();
         return this;
     }
 
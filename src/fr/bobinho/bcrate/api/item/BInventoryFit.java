@@ -0,0 +1,110 @@
+package fr.bobinho.bcrate.api.item;
+
+import fr.bobinho.bcrate.api.validate.BValidate;
+import org.bukkit.Material;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class representing the room left in an inventory
+ * <p>
+ * The storage slots are read once into the number of free slots and the room left on the partial stacks
+ * of each similar item, then the fit of any item is computed from them, as addItem would fill the inventory,
+ * without copying the inventory nor its items.
+ */
+public final class BInventoryFit {
+
+    /**
+     * Fields
+     */
+    private static final int STORAGE_SIZE = 36;
+    private final Map<ItemStack, Integer> room = new HashMap<>();
+    private final int maxStackSize;
+    private final int free;
+
+    /**
+     * Reads the room left in an inventory
+     *
+     * @param inventory the inventory
+     */
+    public BInventoryFit(@Nonnull Inventory inventory) {
+        BValidate.notNull(inventory);
+
+        this.maxStackSize = inventory.getMaxStackSize();
+
+        int free = 0;
+        for (int i = 0; i < Math.min(STORAGE_SIZE, inventory.getSize()); i++) {
+            ItemStack item = inventory.getItem(i);
+
+            if (item == null || item.getType() == Material.AIR) {
+                free++;
+            } else {
+                room.merge(signature(item), Math.max(0, getMaxStackSize(item) - item.getAmount()), Integer::sum);
+            }
+        }
+        this.free = free;
+    }
+
+    /**
+     * Gets the signature of an item, similar items sharing the same one
+     *
+     * @param item the item
+     * @return the signature
+     */
+    private static @Nonnull ItemStack signature(@Nonnull ItemStack item) {
+        ItemStack signature = item.clone();
+        signature.setAmount(1);
+
+        return signature;
+    }
+
+    /**
+     * Gets the stack size of an item in the inventory
+     *
+     * @param item the item
+     * @return the stack size
+     */
+    private int getMaxStackSize(@Nonnull ItemStack item) {
+        return Math.max(1, Math.min(item.getMaxStackSize(), maxStackSize));
+    }
+
+    /**
+     * Gets the number of free slots
+     *
+     * @return the number of free slots
+     */
+    public int getFreeSlots() {
+        return free;
+    }
+
+    /**
+     * Gets the number of free slots needed by an amount of an item, once the partial stacks are filled
+     *
+     * @param signature the signature of the item
+     * @param amount    the amount
+     * @return the number of free slots needed
+     */
+    private long getSlots(@Nonnull ItemStack signature, long amount) {
+        long remaining = amount - room.getOrDefault(signature, 0);
+
+        return remaining <= 0 ? 0 : (remaining + getMaxStackSize(signature) - 1) / getMaxStackSize(signature);
+    }
+
+    /**
+     * Checks if an amount of an item fits in the inventory
+     *
+     * @param item   the item
+     * @param amount the amount
+     * @return true if the amount of the item fits, false otherwise
+     */
+    public boolean fits(@Nonnull ItemStack item, long amount) {
+        BValidate.notNull(item);
+
+        return getSlots(signature(item), amount) <= free;
+    }
+
+}
@@ -0,0 +1,106 @@
+package fr.bobinho.bcrate.api.item;
+
+import fr.bobinho.bcrate.api.validate.BValidate;
+import org.bukkit.inventory.ItemStack;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Bobinho item stack library
+ */
+public final class BItemStack {
+
+    /**
+     * Unitilizable constructor (utility class)
+     */
+    private BItemStack() {
+    }
+
+    /**
+     * Splits an amount of an item into full stacks
+     *
+     * @param item   the item
+     * @param amount the total amount
+     * @return the stacks
+     */
+    public static @Nonnull List<ItemStack> split(@Nonnull ItemStack item, long amount) {
+        BValidate.notNull(item);
+
+        List<ItemStack> stacks = new ArrayList<>();
+        int maxStackSize = Math.max(1, item.getMaxStackSize());
+
+        while (amount > 0) {
+            ItemStack stack = item.clone();
+            stack.setAmount((int) Math.min(amount, maxStackSize));
+            stacks.add(stack);
+            amount = amount - stack.getAmount();
+        }
+
+        return stacks;
+    }
+
+    /**
+     * Merges the similar items into full stacks
+     *
+     * @param items the items
+     * @return the merged stacks
+     */
+    public static @Nonnull List<ItemStack> merge(@Nonnull Collection<ItemStack> items) {
+        BValidate.notNull(items);
+
+        List<ItemStack> types = new ArrayList<>();
+        List<Long> amounts = new ArrayList<>();
+
+        //Sums the amount of each similar item
+        for (ItemStack item : items) {
+            int index = indexOfSimilar(types, item);
+
+            if (index == -1) {
+                types.add(item);
+                amounts.add((long) item.getAmount());
+            } else {
+                amounts.set(index, amounts.get(index) + item.getAmount());
+            }
+        }
+
+        List<ItemStack> stacks = new ArrayList<>();
+        for (int i = 0; i < types.size(); i++) {
+            stacks.addAll(split(types.get(i), amounts.get(i)));
+        }
+
+        return stacks;
+    }
+
+    /**
+     * Counts the items
+     *
+     * @param items the items
+     * @return the total amount
+     */
+    public static long count(@Nonnull Collection<ItemStack> items) {
+        BValidate.notNull(items);
+
+        return items.stream().mapToLong(ItemStack::getAmount).sum();
+    }
+
+    /**
+     * Gets the index of a similar item
+     *
+     * @param items the items
+     * @param item  the item
+     * @return the index of the similar item, -1 if there is none
+     */
+    private static int indexOfSimilar(@Nonnull List<ItemStack> items, @Nonnull ItemStack item) {
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).isSimilar(item)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+}
@@ -3,6 +3,7 @@ package fr.bobinho.bcrate.api.location;
 import fr.bobinho.bcrate.api.validate.BValidate;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.craftbukkit.v1_20_R3.CraftWorld;
 
 import javax.annotation.Nonnull;
@@ -85,37 +86,30 @@ public final class BLocation {
     }
 
     /**
-     * Measures the distance between two location
+     * Gets the range within which a location is observable, from the player tracking range of the spigot config
      *
-     * @param location1 the first location
-     * @param location2 the second location
-     * @return the distance between two location
+     * @param world the world
+     * @return the view range
      */
-    public static double measure(@Nonnull Location location1, @Nonnull Location location2) {
-        BValidate.notNull(location1);
-        BValidate.notNull(location2);
-
-        //If one of the two location is in different world, return max integer value
-        if (!Objects.requireNonNull(location1.getWorld()).getUID().equals(Objects.requireNonNull(location2.getWorld()).getUID()))
-            return Integer.MAX_VALUE;
+    public static double getViewRange(@Nonnull World world) {
+        BValidate.notNull(world);
 
-        //Calculates and returns
-        return location1.distance(location2);
+        return ((CraftWorld) world).getHandle().spigotConfig.playerTrackingRange / 1.5;
     }
 
     /**
-     * Checks if the second location is observable from the first location
+     * Checks if two locations are in the same world and within a range, comparing squared distances
      *
      * @param location1 the first location
      * @param location2 the second location
-     * @return true if the second location is observable from the first location, false otherwise
+     * @param range     the range
+     * @return true if the two locations are within the range, false otherwise
      */
-    public static boolean canSee(@Nonnull Location location1, @Nonnull Location location2) {
+    public static boolean isWithin(@Nonnull Location location1, @Nonnull Location location2, double range) {
         BValidate.notNull(location1);
         BValidate.notNull(location2);
 
-        //Measure distance with player tracking range from the spigot config
-        return measure(location1, location2) <= ((CraftWorld) Objects.requireNonNull(location1.getWorld())).getHandle().spigotConfig.playerTrackingRange / 1.5;
+        return Objects.equals(location1.getWorld(), location2.getWorld()) && location1.distanceSquared(location2) <= range * range;
     }
 
     /**
@@ -0,0 +1,223 @@
+package fr.bobinho.bcrate.api.location;
+
+import fr.bobinho.bcrate.api.event.BEvent;
+import fr.bobinho.bcrate.api.validate.BValidate;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.player.*;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+
+/**
+ * Bobinho spatial index library
+ * <p>
+ * The online players are indexed by world and chunk cell, their cell being updated on move, teleport,
+ * world change and respawn. A nearby query then only visits the cells crossing its radius
+ * and compares squared distances, instead of measuring the distance of every online player.
+ * The index is only used on the main thread.
+ */
+public final class BSpatialIndex {
+
+    /**
+     * Fields
+     */
+    private static final int CELL_SHIFT = 4;
+    private static final Map<UUID, Map<Long, List<Player>>> cells = new HashMap<>();
+    private static final Map<UUID, Cell> positions = new HashMap<>();
+    private static long version;
+
+    /**
+     * Record representing the cell of a player
+     *
+     * @param world the world uuid
+     * @param key   the cell key
+     */
+    private record Cell(@Nonnull UUID world, long key) {
+    }
+
+    /**
+     * Unitilizable constructor (utility class)
+     */
+    private BSpatialIndex() {
+    }
+
+    /**
+     * Registers the spatial index and indexes the online players
+     */
+    public static void register() {
+
+        //Indexes before the other listeners, so they already query the new cell
+        BEvent.registerEvent(PlayerJoinEvent.class, EventPriority.LOWEST)
+                .consume(event -> update(event.getPlayer(), event.getPlayer().getLocation()));
+        BEvent.registerEvent(PlayerRespawnEvent.class, EventPriority.MONITOR)
+                .consume(event -> update(event.getPlayer(), event.getRespawnLocation()));
+        BEvent.registerEvent(PlayerChangedWorldEvent.class, EventPriority.MONITOR)
+                .consume(event -> update(event.getPlayer(), event.getPlayer().getLocation()));
+        BEvent.registerEvent(PlayerQuitEvent.class, EventPriority.MONITOR)
+                .consume(event -> remove(event.getPlayer()));
+
+        //Most moves stay in the same cell, only crossing ones are indexed
+        BEvent.registerEvent(PlayerMoveEvent.class, EventPriority.MONITOR)
+                .filter(BEvent.Filter.IGNORE_CANCELLED)
+                .filter(event -> event.getTo() != null)
+                .filter(event -> (event.getFrom().getBlockX() >> CELL_SHIFT) != (event.getTo().getBlockX() >> CELL_SHIFT)
+                        || (event.getFrom().getBlockZ() >> CELL_SHIFT) != (event.getTo().getBlockZ() >> CELL_SHIFT))
+                .consume(event -> update(event.getPlayer(), event.getTo()));
+        BEvent.registerEvent(PlayerTeleportEvent.class, EventPriority.MONITOR)
+                .filter(BEvent.Filter.IGNORE_CANCELLED)
+                .filter(event -> event.getTo() != null)
+                .consume(event -> update(event.getPlayer(), event.getTo()));
+
+        Bukkit.getOnlinePlayers().forEach(player -> update(player, player.getLocation()));
+    }
+
+    /**
+     * Unregisters the spatial index
+     */
+    public static void unregister() {
+        cells.clear();
+        positions.clear();
+    }
+
+    /**
+     * Gets the key of the cell containing a block coordinate
+     *
+     * @param x the block x coordinate
+     * @param z the block z coordinate
+     * @return the cell key
+     */
+    private static long getKey(int x, int z) {
+        return ((long) (x >> CELL_SHIFT) << 32) | ((z >> CELL_SHIFT) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Moves a player to the cell of a location
+     *
+     * @param player   the player
+     * @param location the location
+     */
+    public static void update(@Nonnull Player player, @Nonnull Location location) {
+        BValidate.notNull(player);
+        BValidate.notNull(location);
+
+        World world = location.getWorld();
+
+        //If the location has no world, no need to continue
+        if (world == null) {
+            return;
+        }
+
+        Cell cell = new Cell(world.getUID(), getKey(location.getBlockX(), location.getBlockZ()));
+        Cell previous = positions.put(player.getUniqueId(), cell);
+
+        //If the player stays in the same cell, no need to continue
+        if (cell.equals(previous)) {
+            return;
+        }
+
+        if (previous != null) {
+            removeFromCell(player, previous);
+        }
+        version++;
+        cells.computeIfAbsent(cell.world(), key -> new HashMap<>()).computeIfAbsent(cell.key(), key -> new ArrayList<>(2)).add(player);
+    }
+
+    /**
+     * Removes a player from the index
+     *
+     * @param player the player
+     */
+    public static void remove(@Nonnull Player player) {
+        BValidate.notNull(player);
+
+        Cell previous = positions.remove(player.getUniqueId());
+        if (previous != null) {
+            removeFromCell(player, previous);
+            version++;
+        }
+    }
+
+    /**
+     * Gets the version of the index, changing each time a player changes of cell
+     *
+     * @return the version
+     */
+    public static long getVersion() {
+        return version;
+    }
+
+    /**
+     * Removes a player from a cell, dropping the cell once empty
+     *
+     * @param player the player
+     * @param cell   the cell
+     */
+    private static void removeFromCell(@Nonnull Player player, @Nonnull Cell cell) {
+        Map<Long, List<Player>> world = cells.get(cell.world());
+        if (world == null) {
+            return;
+        }
+
+        List<Player> players = world.get(cell.key());
+        if (players == null) {
+            return;
+        }
+
+        players.removeIf(indexed -> indexed.getUniqueId().equals(player.getUniqueId()));
+        if (players.isEmpty()) {
+            world.remove(cell.key());
+        }
+    }
+
+    /**
+     * Gets the players within a radius of a location
+     *
+     * @param location the location
+     * @param radius   the radius
+     * @return the players within the radius
+     */
+    public static @Nonnull List<Player> getNearby(@Nonnull Location location, double radius) {
+        BValidate.notNull(location);
+
+        World world = location.getWorld();
+        Map<Long, List<Player>> worldCells = world == null ? null : cells.get(world.getUID());
+
+        //If nobody is in the world, no need to continue
+        if (worldCells == null || worldCells.isEmpty() || radius < 0) {
+            return Collections.emptyList();
+        }
+
+        double squaredRadius = radius * radius;
+        int minX = (int) Math.floor(location.getX() - radius) >> CELL_SHIFT;
+        int maxX = (int) Math.floor(location.getX() + radius) >> CELL_SHIFT;
+        int minZ = (int) Math.floor(location.getZ() - radius) >> CELL_SHIFT;
+        int maxZ = (int) Math.floor(location.getZ() + radius) >> CELL_SHIFT;
+
+        List<Player> nearby = new ArrayList<>();
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                List<Player> players = worldCells.get(getKey(x << CELL_SHIFT, z << CELL_SHIFT));
+
+                if (players == null) {
+                    continue;
+                }
+
+                for (Player player : players) {
+                    Location playerLocation = player.getLocation();
+
+                    //A teleported player is indexed slightly before being moved
+                    if (world.equals(playerLocation.getWorld()) && playerLocation.distanceSquared(location) <= squaredRadius) {
+                        nearby.add(player);
+                    }
+                }
+            }
+        }
+
+        return nearby;
+    }
+
+}
@@ -3,6 +3,9 @@ package fr.bobinho.bcrate.api.packet;
 import fr.bobinho.bcrate.BCrateCore;
 import fr.bobinho.bcrate.api.validate.BValidate;
 import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientboundBundlePacket;
+import net.minecraft.network.protocol.game.PacketListenerPlayOut;
+import net.minecraft.server.network.PlayerConnection;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.craftbukkit.v1_20_R3.entity.CraftPlayer;
@@ -10,16 +13,100 @@ import org.bukkit.entity.Player;
 
 import javax.annotation.Nonnull;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 
 /**
  * Bobinho packet library
+ * <p>
+ * The packets sent while a bundle is open are buffered by player, then each player receives them
+ * as one bundle packet when it closes, the client applying them in the same frame, with a single flush.
  */
 public final class BPacket {
 
+    /**
+     * Fields
+     */
+    private static final int MAX_BUNDLE_SIZE = 4096;
+    private static final Map<Player, List<Packet<?>>> buffers = new LinkedHashMap<>();
+    private static int bundleDepth;
+
+    /**
+     * Runs an action, bundling the packets it sends by player
+     * Only the main thread can bundle, packets sent by other threads are not buffered.
+     *
+     * @param action the action
+     */
+    public static void bundle(@Nonnull Runnable action) {
+        BValidate.notNull(action);
+
+        //Other threads send directly
+        if (!Bukkit.isPrimaryThread()) {
+            action.run();
+            return;
+        }
+
+        bundleDepth++;
+        try {
+            action.run();
+        } finally {
+            bundleDepth--;
+
+            //Flushes once the outermost bundle closes
+            if (bundleDepth == 0) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Sends the buffered packets, as one bundle by player
+     */
+    private static void flush() {
+        List<Map.Entry<Player, List<Packet<?>>>> pending = new ArrayList<>(buffers.entrySet());
+        buffers.clear();
+
+        for (Map.Entry<Player, List<Packet<?>>> buffer : pending) {
+            if (!buffer.getKey().isOnline()) {
+                continue;
+            }
+
+            PlayerConnection connection = ((CraftPlayer) buffer.getKey()).getHandle().c;
+            List<Packet<?>> packets = buffer.getValue();
+
+            //A single packet needs no bundle
+            if (packets.size() == 1) {
+                connection.b(packets.get(0));
+                continue;
+            }
+
+            //The client limits the size of a bundle
+            for (int i = 0; i < packets.size(); i += MAX_BUNDLE_SIZE) {
+                connection.b(new ClientboundBundlePacket((List<Packet<PacketListenerPlayOut>>) (List<?>) packets.subList(i, Math.min(packets.size(), i + MAX_BUNDLE_SIZE))));
+            }
+        }
+    }
+
+    /**
+     * Sends the packet to the player, or buffers it if a bundle is open
+     *
+     * @param player the player
+     * @param packet the packet
+     */
+    private static void send(@Nonnull Player player, @Nonnull Packet<?> packet) {
+        if (bundleDepth > 0 && Bukkit.isPrimaryThread()) {
+            buffers.computeIfAbsent(player, key -> new ArrayList<>()).add(packet);
+            return;
+        }
+
+        ((CraftPlayer) player).getHandle().c.b(packet);
+    }
+
     /**
      * Sends the packet to the players
      *
@@ -33,7 +120,7 @@ public final class BPacket {
         //Sends packet
         Arrays.stream(players)
                 .filter(player -> player != null && player.isOnline())
-                .forEach(player -> ((CraftPlayer) player).getHandle().c.b(packet));
+                .forEach(player -> send(player, packet));
     }
 
     /**
@@ -50,7 +137,7 @@ public final class BPacket {
         Arrays.stream(players)
                 .map(Bukkit::getPlayer)
                 .filter(player -> player != null && player.isOnline())
-                .forEach(player -> ((CraftPlayer) player).getHandle().c.b(packet));
+                .forEach(player -> send(player, packet));
     }
 
     /**
@@ -66,7 +153,7 @@ public final class BPacket {
         //Sends packet.
         players.stream()
                 .filter(player -> player != null && player.isOnline())
-                .forEach(player -> ((CraftPlayer) player).getHandle().c.b(packet));
+                .forEach(player -> send(player, packet));
     }
 
     /**
@@ -83,7 +170,7 @@ public final class BPacket {
         //Sends packet.
         Objects.requireNonNull(location.getWorld()).getNearbyEntities(location, radius, radius, radius).stream()
                 .filter(entity -> entity instanceof Player)
-                .forEach(player -> ((CraftPlayer) player).getHandle().c.b(packet));
+                .forEach(player -> send((Player) player, packet));
     }
 
     /**
@@ -0,0 +1,97 @@
+package fr.bobinho.bcrate.api.random;
+
+import javax.annotation.Nonnull;
+import java.util.SplittableRandom;
+
+/**
+ * Bobinho random library
+ * <p>
+ * Each thread draws from its own stream split from a root one, so the hot path never shares nor allocates a random.
+ * Seeded draws are computed from a seed and a draw index only (SplitMix64), so any of them can be computed again later.
+ */
+public final class BRandom {
+
+    /**
+     * Fields
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final SplittableRandom root = new SplittableRandom();
+    private static final ThreadLocal<SplittableRandom> streams = ThreadLocal.withInitial(BRandom::split);
+
+    /**
+     * Unitilizable constructor (utility class)
+     */
+    private BRandom() {
+    }
+
+    /**
+     * Splits a new stream from the root one
+     *
+     * @return the new stream
+     */
+    private static synchronized @Nonnull SplittableRandom split() {
+        return root.split();
+    }
+
+    /**
+     * Gets the random stream of the current thread
+     * The stream must not be shared with other threads.
+     *
+     * @return the random stream of the current thread
+     */
+    public static @Nonnull SplittableRandom current() {
+        return streams.get();
+    }
+
+    /**
+     * Draws a uniform random number in [0, 1) from the stream of the current thread
+     *
+     * @return the random number
+     */
+    public static double nextDouble() {
+        return current().nextDouble();
+    }
+
+    /**
+     * Draws a uniform random integer in [0, bound) from the stream of the current thread
+     *
+     * @param bound the exclusive bound
+     * @return the random integer
+     */
+    public static int nextInt(int bound) {
+        return current().nextInt(bound);
+    }
+
+    /**
+     * Draws a new seed from the stream of the current thread
+     *
+     * @return the seed
+     */
+    public static long nextSeed() {
+        return current().nextLong();
+    }
+
+    /**
+     * Computes a seeded uniform random number in [0, 1)
+     *
+     * @param seed  the seed
+     * @param index the draw index
+     * @return the random number
+     */
+    public static double nextDouble(long seed, long index) {
+        return (mix(seed + (index + 1) * GOLDEN_GAMMA) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Mixes the bits of a value (SplitMix64 finalizer)
+     *
+     * @param value the value
+     * @return the mixed value
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+}
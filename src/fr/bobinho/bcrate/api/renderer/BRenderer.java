@@ -1,6 +1,7 @@
 package fr.bobinho.bcrate.api.renderer;
 
 import fr.bobinho.bcrate.api.location.BLocation;
+import fr.bobinho.bcrate.api.location.BSpatialIndex;
 import fr.bobinho.bcrate.api.validate.BValidate;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -29,6 +30,7 @@ public final class BRenderer {
     private Consumer<BRenderer> deleteConsumer;
     private Consumer<BRenderer> updateConsumer;
     private final List<UUID> shownViewers = new ArrayList<>();
+    private BRendererGroup group;
 
     /**
      * Creates a new renderer
@@ -73,6 +75,12 @@ public final class BRenderer {
      * @return all shown viewers as players
      */
     public @Nonnull List<Player> getShownViewersAsPlayer() {
+
+        //Grouped renderers share the viewers of their group
+        if (group != null) {
+            return group.getShownViewersAsPlayer();
+        }
+
         return shownViewers.stream()
                 .map(Bukkit::getPlayer)
                 .filter(Objects::nonNull)
@@ -85,7 +93,7 @@ public final class BRenderer {
      * @return all shown viewers
      */
     public @Nonnull List<UUID> getShownViewers() {
-        return shownViewers;
+        return group != null ? group.getShownViewers() : shownViewers;
     }
 
     /**
@@ -96,7 +104,45 @@ public final class BRenderer {
     public void removeShownViewers(@Nonnull UUID uuid) {
         BValidate.notNull(uuid);
 
-        shownViewers.remove(uuid);
+        getShownViewers().remove(uuid);
+    }
+
+    /**
+     * Gets the group
+     *
+     * @return an optional group
+     */
+    public @Nonnull Optional<BRendererGroup> getGroup() {
+        return Optional.ofNullable(group);
+    }
+
+    /**
+     * Sets the group, done by the group when the renderer is added
+     *
+     * @param group the group
+     */
+    void setGroup(@Nonnull BRendererGroup group) {
+        BValidate.notNull(group);
+
+        this.group = group;
+    }
+
+    /**
+     * Shows the objects to players, without checking they can see them
+     *
+     * @param players the players
+     */
+    void show(@Nonnull List<Player> players) {
+        showConsumer.accept(players);
+    }
+
+    /**
+     * Hides the objects to players
+     *
+     * @param players the players
+     */
+    void hide(@Nonnull List<Player> players) {
+        hideConsumer.accept(players);
     }
 
     /**
@@ -339,13 +385,23 @@ public final class BRenderer {
     private boolean canSee(@Nonnull Location targetLocation) {
         BValidate.notNull(targetLocation);
 
+        return BLocation.isWithin(location, targetLocation, getViewRange());
+    }
+
+    /**
+     * Gets the view range, the configured radius or the default one
+     *
+     * @return the view range
+     */
+    private double getViewRange() {
+
         //If radius is configured, use it instead of default one
         if (radius > 0) {
-            return BLocation.measure(location, targetLocation) <= radius;
+            return radius;
         }
 
         //Use default configuration
-        return BLocation.canSee(location, targetLocation);
+        return BLocation.getViewRange(Objects.requireNonNull(location.getWorld()));
     }
 
     /**
@@ -358,6 +414,12 @@ public final class BRenderer {
             updateConsumer.accept(this);
         }
 
+        //Grouped renderers are shown and hidden by the single pass of their group
+        if (group != null) {
+            group.render();
+            return;
+        }
+
         //Checks shown viewers
         if (!shownViewers.isEmpty()) {
 
@@ -426,11 +488,10 @@ public final class BRenderer {
             return;
         }
 
-        //Declare target viewers
-        List<Player> targetViewers = Bukkit.getOnlinePlayers().stream()
+        //Declare target viewers, only the nearby players from the spatial index
+        List<Player> targetViewers = BSpatialIndex.getNearby(location, getViewRange()).stream()
                 .filter(player -> !blacklist.contains(player.getUniqueId()))
                 .filter(player -> !shownViewers.contains(player.getUniqueId()))
-                .filter(player -> canSee(player.getLocation()))
                 .collect(Collectors.toList());
 
         //If viewers are empty, no need to continue
@@ -0,0 +1,198 @@
+package fr.bobinho.bcrate.api.renderer;
+
+import fr.bobinho.bcrate.api.location.BLocation;
+import fr.bobinho.bcrate.api.location.BSpatialIndex;
+import fr.bobinho.bcrate.api.validate.BValidate;
+import net.minecraft.server.MinecraftServer;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Bobinho renderer group library
+ * <p>
+ * The renderers of entities standing together, such as the structure of a crate, share one viewer list
+ * and one visibility pass: the first member rendered in a tick decides who sees the whole group, and
+ * shows or hides all members to them. The other members rendered in the same tick reuse it,
+ * unless a player moved to another cell of the spatial index meanwhile.
+ */
+public final class BRendererGroup {
+
+    /**
+     * Fields
+     */
+    private final List<BRenderer> members = new ArrayList<>();
+    private final List<UUID> shownViewers = new ArrayList<>();
+    private final Location location;
+    private int radius = -1;
+    private int renderedTick = -1;
+    private long renderedVersion = -1;
+
+    /**
+     * Creates a new renderer group
+     *
+     * @param location the location
+     */
+    public BRendererGroup(@Nonnull Location location) {
+        BValidate.notNull(location);
+
+        this.location = location;
+    }
+
+    /**
+     * Adds a renderer to the group, its viewers becoming the ones of the group
+     *
+     * @param renderer the renderer
+     * @return the renderer group
+     */
+    public @Nonnull BRendererGroup add(@Nonnull BRenderer renderer) {
+        BValidate.notNull(renderer);
+
+        renderer.setGroup(this);
+        members.add(renderer);
+
+        return this;
+    }
+
+    /**
+     * Gets the members
+     *
+     * @return the members
+     */
+    public @Nonnull List<BRenderer> getMembers() {
+        return Collections.unmodifiableList(members);
+    }
+
+    /**
+     * Gets all shown viewers as players
+     *
+     * @return all shown viewers as players
+     */
+    public @Nonnull List<Player> getShownViewersAsPlayer() {
+        return shownViewers.stream()
+                .map(Bukkit::getPlayer)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Gets all shown viewers
+     *
+     * @return all shown viewers
+     */
+    public @Nonnull List<UUID> getShownViewers() {
+        return shownViewers;
+    }
+
+    /**
+     * Removes player from shown viewers
+     *
+     * @param uuid the uuid
+     */
+    public void removeShownViewers(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+
+        shownViewers.remove(uuid);
+    }
+
+    /**
+     * Gets the location
+     *
+     * @return the location
+     */
+    public @Nonnull Location getLocation() {
+        return location;
+    }
+
+    /**
+     * Gets the view radius
+     *
+     * @return the view radius
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Sets the view radius
+     *
+     * @param radius the radius
+     * @return the renderer group
+     */
+    public @Nonnull BRendererGroup setRadius(int radius) {
+        this.radius = radius;
+
+        return this;
+    }
+
+    /**
+     * Gets the view range, the configured radius or the default one
+     *
+     * @return the view range
+     */
+    private double getViewRange() {
+
+        //If radius is configured, use it instead of default one
+        if (radius > 0) {
+            return radius;
+        }
+
+        //Use default configuration
+        return BLocation.getViewRange(Objects.requireNonNull(location.getWorld()));
+    }
+
+    /**
+     * Renders all members, at most once by tick while no player changes of cell
+     */
+    public void render() {
+
+        //If the group was already rendered in this tick, no need to continue
+        if (renderedTick == MinecraftServer.currentTick && renderedVersion == BSpatialIndex.getVersion()) {
+            return;
+        }
+        renderedTick = MinecraftServer.currentTick;
+        renderedVersion = BSpatialIndex.getVersion();
+
+        double range = getViewRange();
+
+        //Hides the group to the viewers who left its range
+        if (!shownViewers.isEmpty()) {
+            List<UUID> notAbleToSeeViewers = shownViewers.stream()
+                    .filter(uuid -> {
+                        Player player = Bukkit.getPlayer(uuid);
+                        return player == null || !BLocation.isWithin(location, player.getLocation(), range);
+                    }).toList();
+
+            if (!notAbleToSeeViewers.isEmpty()) {
+                shownViewers.removeAll(notAbleToSeeViewers);
+
+                List<Player> targetViewers = notAbleToSeeViewers.stream()
+                        .map(Bukkit::getPlayer)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList());
+
+                if (!targetViewers.isEmpty()) {
+                    members.forEach(member -> member.hide(targetViewers));
+                }
+            }
+        }
+
+        //Shows the group to the players who entered its range
+        List<Player> targetViewers = BSpatialIndex.getNearby(location, range).stream()
+                .filter(player -> !shownViewers.contains(player.getUniqueId()))
+                .collect(Collectors.toList());
+
+        //If viewers are empty, no need to continue
+        if (targetViewers.isEmpty()) {
+            return;
+        }
+
+        targetViewers.forEach(player -> shownViewers.add(player.getUniqueId()));
+        members.forEach(member -> member.show(targetViewers));
+    }
+
+}
@@ -2,6 +2,7 @@ package fr.bobinho.bcrate.api.setting;
 
 import fr.bobinho.bcrate.BCrateCore;
 import fr.bobinho.bcrate.api.validate.BValidate;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.inventory.ItemStack;
 
@@ -10,8 +11,12 @@ import java.awt.geom.IllegalPathStateException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
+import java.util.zip.CRC32;
 
 /**
  * Bobinho setting library
@@ -21,22 +26,73 @@ public final class BSetting {
     /**
      * Fields
      */
+    private static volatile int backups;
+    private static volatile long backupInterval;
     private final String fileName;
+    private final boolean verbose;
+    private final boolean backedUp;
+    private final Object writeLock = new Object();
 
     private YamlConfiguration configuration;
+    private volatile long checksum;
 
     /**
      * Creates a new setting
      *
      * @param fileName the setting file name
+     * @param verbose  true to log the loading, false otherwise
+     * @param backedUp true to keep backups of the file, false otherwise
      */
-    public BSetting(@Nonnull String fileName) {
+    BSetting(@Nonnull String fileName, boolean verbose, boolean backedUp) {
         BValidate.notNull(fileName);
 
         this.fileName = fileName;
+        this.verbose = verbose;
+        this.backedUp = backedUp;
         initialize();
     }
 
+    /**
+     * Creates a new setting
+     *
+     * @param fileName the setting file name
+     * @param verbose  true to log the loading, false otherwise
+     */
+    public BSetting(@Nonnull String fileName, boolean verbose) {
+        this(fileName, verbose, true);
+    }
+
+    /**
+     * Creates a new setting
+     *
+     * @param fileName the setting file name
+     */
+    public BSetting(@Nonnull String fileName) {
+        this(fileName, true);
+    }
+
+    /**
+     * Sets the number of backups kept for each setting file
+     *
+     * @param backups the number of backups
+     */
+    public static void setBackups(int backups) {
+        BValidate.isTrue(backups >= 0);
+
+        BSetting.backups = backups;
+    }
+
+    /**
+     * Sets the minimum time between two backups of a setting file
+     *
+     * @param backupInterval the backup interval in milliseconds
+     */
+    public static void setBackupInterval(long backupInterval) {
+        BValidate.isTrue(backupInterval >= 0);
+
+        BSetting.backupInterval = backupInterval;
+    }
+
     /**
      * Gets the file name
      *
@@ -46,11 +102,30 @@ public final class BSetting {
         return fileName;
     }
 
+    /**
+     * Gets the file
+     *
+     * @return the file
+     */
+    private @Nonnull File getFile() {
+        return new File(BCrateCore.getInstance().getDataFolder(), getFileName() + ".yml");
+    }
+
+    /**
+     * Gets a backup file
+     *
+     * @param generation the backup generation, 1 being the most recent
+     * @return the backup file
+     */
+    private @Nonnull File getBackupFile(int generation) {
+        return new File(BCrateCore.getInstance().getDataFolder(), getFileName() + ".yml." + generation);
+    }
+
     /**
      * Initializes settings file
      */
     public void initialize() {
-        File file = new File(BCrateCore.getInstance().getDataFolder(), getFileName() + ".yml");
+        File file = getFile();
 
         if (!file.exists()) {
             try {
@@ -67,9 +142,107 @@ public final class BSetting {
             }
         }
 
-        configuration = YamlConfiguration.loadConfiguration(file);
+        checksum = checksum(file.toPath());
+        configuration = load(file).orElseGet(() -> {
+            BCrateCore.getBLogger().error("Could not read the " + getFileName() + ".yml file, trying the backups!");
+
+            //Restores the most recent readable backup
+            for (int generation = 1; generation <= backups; generation++) {
+                Optional<YamlConfiguration> backup = getBackupFile(generation).exists() ? load(getBackupFile(generation)) : Optional.empty();
+
+                if (backup.isPresent()) {
+                    BCrateCore.getBLogger().warn("Restored the " + getFileName() + ".yml file from the backup " + generation + ".");
+                    return backup.get();
+                }
+            }
+
+            return new YamlConfiguration();
+        });
+
+        if (verbose) {
+            BCrateCore.getBLogger().info("Successfully loaded " + getFileName() + " data.");
+        }
+    }
+
+    /**
+     * Reads the setting file again into a detached setting, without changing this one
+     * May be called from any thread.
+     *
+     * @return the read setting
+     */
+    public @Nonnull BSetting read() {
+        return new BSetting(fileName, false);
+    }
+
+    /**
+     * Replaces the configuration by the one of a read setting
+     *
+     * @param read the read setting
+     */
+    public void apply(@Nonnull BSetting read) {
+        BValidate.notNull(read);
+        BValidate.isTrue(read.getFileName().equals(getFileName()));
+
+        configuration = read.configuration;
+        checksum = read.checksum;
+    }
+
+    /**
+     * Gets the checksum of the file content last read or written by this setting
+     *
+     * @return the checksum
+     */
+    long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Computes the checksum of a file content
+     *
+     * @param path the file path
+     * @return the checksum, -1 if the file is not readable
+     */
+    static long checksum(@Nonnull Path path) {
+        BValidate.notNull(path);
+
+        try {
+            return checksum(Files.readAllBytes(path));
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Computes the checksum of a content
+     *
+     * @param content the content
+     * @return the checksum
+     */
+    private static long checksum(@Nonnull byte[] content) {
+        BValidate.notNull(content);
+
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    /**
+     * Loads a setting file
+     *
+     * @param file the file
+     * @return the loaded configuration, empty if the file is not readable
+     */
+    private static @Nonnull Optional<YamlConfiguration> load(@Nonnull File file) {
+        BValidate.notNull(file);
+
+        YamlConfiguration loaded = new YamlConfiguration();
+        try {
+            loaded.load(file);
+        } catch (IOException | InvalidConfigurationException e) {
+            return Optional.empty();
+        }
 
-        BCrateCore.getBLogger().info("Successfully loaded " + getFileName() + " data.");
+        return Optional.of(loaded);
     }
 
     /**
@@ -153,6 +326,18 @@ public final class BSetting {
         return configuration.getBoolean(path);
     }
 
+    /**
+     * Checks if the path is associated with a boolean and gets the optional boolean
+     *
+     * @param path the path
+     * @return the optional boolean
+     */
+    public @Nonnull Optional<Boolean> isBoolean(@Nonnull String path) {
+        BValidate.notNull(path);
+
+        return Optional.ofNullable(configuration.isBoolean(path) ? configuration.getBoolean(path) : null);
+    }
+
     /**
      * Gets the requested String by path
      *
@@ -165,6 +350,18 @@ public final class BSetting {
         return Optional.ofNullable(configuration.getString(path)).orElseThrow(IllegalPathStateException::new);
     }
 
+    /**
+     * Checks if the path is associated with a String and gets the optional String
+     *
+     * @param path the path
+     * @return the optional String
+     */
+    public @Nonnull Optional<String> isString(@Nonnull String path) {
+        BValidate.notNull(path);
+
+        return Optional.ofNullable(configuration.isString(path) ? configuration.getString(path) : null);
+    }
+
     /**
      * Gets the requested String list by path
      *
@@ -221,17 +418,28 @@ public final class BSetting {
      * @param path  the path
      * @param value the value
      */
-    public void set(@Nonnull String path, @Nonnull Object value) {
+    public synchronized void set(@Nonnull String path, @Nonnull Object value) {
         BValidate.notNull(path);
         BValidate.notNull(value);
 
         configuration.set(path, value);
     }
 
+    /**
+     * Unsets the specified path
+     *
+     * @param path the path
+     */
+    public synchronized void unset(@Nonnull String path) {
+        BValidate.notNull(path);
+
+        configuration.set(path, null);
+    }
+
     /**
      * Clears configuration
      */
-    public void clear() {
+    public synchronized void clear() {
         for (String key : getKeys()) {
             configuration.set(key, null);
         }
@@ -239,12 +447,142 @@ public final class BSetting {
 
     /**
      * Saves configuration
+     * If the writer is started, the save is merged with the pending ones and written later on its thread
      */
     public void save() {
+        if (BSettingWriter.isEnabled()) {
+            BSettingWriter.schedule(this);
+            return;
+        }
+
+        BSettingWriter.written(this, write(serialize()));
+    }
+
+    /**
+     * Serializes configuration
+     * The changes and the serialization hold the setting monitor, so a setting changed off the main thread
+     * is never serialized in the middle of a change.
+     *
+     * @return the serialized configuration
+     */
+    synchronized @Nonnull String serialize() {
+        return configuration.saveToString();
+    }
+
+    /**
+     * Writes the serialized configuration to the file
+     * The content is synced to a temporary file, which then atomically replaces the file, so a crash never leaves it truncated.
+     * The replaced file is kept as a backup, unless the setting keeps none.
+     *
+     * @param content the serialized configuration
+     * @return true if the file was written, false otherwise
+     */
+    boolean write(@Nonnull String content) {
+        BValidate.notNull(content);
+
+        //Writes hold their own lock, so a slow write never blocks the changes
+        synchronized (writeLock) {
+            Path target = getFile().toPath();
+            Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+
+            try {
+                Files.createDirectories(target.getParent());
+
+                //Writes and syncs the temporary file
+                byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+                try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(true);
+                }
+
+                if (backedUp && Files.exists(target)) {
+                    backup(target);
+                }
+
+                //Remembers the written content, so the watcher does not reload our own writes
+                checksum = checksum(bytes);
+
+                try {
+                    Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                BCrateCore.getBLogger().error("Could not save the " + getFileName() + ".yml file!", e);
+                return false;
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Writes the serialized configuration to the file directly, without temporary file, sync nor backup
+     * Only meant for bulk writes which can be run again if interrupted, and which sync all written files at once afterwards.
+     *
+     * @param content the serialized configuration
+     * @return true if the file was written, false otherwise
+     */
+    boolean writeUnsynced(@Nonnull String content) {
+        BValidate.notNull(content);
+
+        //Writes hold their own lock, so a slow write never blocks the changes
+        synchronized (writeLock) {
+            Path target = getFile().toPath();
+
+            try {
+                Files.createDirectories(target.getParent());
+
+                byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+                checksum = checksum(bytes);
+                Files.write(target, bytes);
+            } catch (IOException e) {
+                BCrateCore.getBLogger().error("Could not save the " + getFileName() + ".yml file!", e);
+                return false;
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Rolls the backups and keeps the current file as the most recent one
+     * The backups are only rolled once the most recent one is older than the backup interval, so frequent saves
+     * keep a few versions spread over time instead of the last few saves.
+     *
+     * @param target the current file
+     * @throws IOException if a backup could not be written
+     */
+    private void backup(@Nonnull Path target) throws IOException {
+        BValidate.notNull(target);
+
+        //If there is no backup to keep, no need to continue
+        int backups = BSetting.backups;
+        if (backups == 0) {
+            return;
+        }
+
+        //If the most recent backup is recent enough, no need to continue
+        Path latest = getBackupFile(1).toPath();
+        if (Files.exists(latest) && System.currentTimeMillis() - Files.getLastModifiedTime(latest).toMillis() < backupInterval) {
+            return;
+        }
+
+        Files.deleteIfExists(getBackupFile(backups).toPath());
+        for (int generation = backups - 1; generation >= 1; generation--) {
+            if (getBackupFile(generation).exists()) {
+                Files.move(getBackupFile(generation).toPath(), getBackupFile(generation + 1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        //Links the current file when possible, the atomic move then only replaces the name of the file
         try {
-            configuration.save(BCrateCore.getInstance().getDataFolder() + "/" + getFileName() + ".yml");
-        } catch (IOException e) {
-            BCrateCore.getBLogger().error("Could not save the " + getFileName() + ".yml file!", e);
+            Files.createLink(getBackupFile(1).toPath(), target);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(target, getBackupFile(1).toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
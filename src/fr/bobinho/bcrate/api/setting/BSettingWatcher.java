@@ -0,0 +1,199 @@
+package fr.bobinho.bcrate.api.setting;
+
+import fr.bobinho.bcrate.BCrateCore;
+import fr.bobinho.bcrate.api.scheduler.BScheduler;
+import fr.bobinho.bcrate.api.validate.BValidate;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Bobinho setting watcher
+ * <p>
+ * Watches the data folder and reloads a setting file when it is changed outside the plugin.
+ * Bursts of changes are debounced, only the changed file is read and parsed off the main thread,
+ * and the new state is swapped in on the next tick.
+ */
+public final class BSettingWatcher {
+
+    /**
+     * Fields
+     */
+    private static final Map<String, Watch> watches = new ConcurrentHashMap<>();
+    private static WatchService service;
+    private static Thread thread;
+
+    /**
+     * Record representing a watched setting
+     *
+     * @param setting the setting
+     * @param handler the handler parsing the read setting off the main thread, and returning the task applying it on the main thread
+     */
+    private record Watch(@Nonnull BSetting setting, @Nonnull Function<BSetting, Runnable> handler) {
+    }
+
+    /**
+     * Unitilizable constructor (utility class)
+     */
+    private BSettingWatcher() {
+    }
+
+    /**
+     * Starts the watcher
+     *
+     * @param debounce the delay in milliseconds without change before reloading a file
+     */
+    public static synchronized void start(int debounce) {
+        BValidate.isTrue(debounce > 0);
+
+        if (isEnabled()) {
+            return;
+        }
+
+        Path directory = BCrateCore.getInstance().getDataFolder().toPath();
+        try {
+            service = FileSystems.getDefault().newWatchService();
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            BCrateCore.getBLogger().error("Could not watch the plugin folder!", e);
+            service = null;
+            return;
+        }
+
+        WatchService current = service;
+        thread = new Thread(() -> watch(current, directory, debounce), "BCrate-Watcher");
+        thread.setDaemon(true);
+        thread.start();
+
+        BCrateCore.getBLogger().info("Successfully started the setting watcher.");
+    }
+
+    /**
+     * Stops the watcher
+     */
+    public static synchronized void stop() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        try {
+            service.close();
+        } catch (IOException e) {
+            BCrateCore.getBLogger().error("Could not stop the setting watcher!", e);
+        }
+
+        thread.interrupt();
+        service = null;
+        thread = null;
+    }
+
+    /**
+     * Checks if the watcher is enabled
+     *
+     * @return true if the watcher is enabled, false otherwise
+     */
+    public static boolean isEnabled() {
+        return service != null;
+    }
+
+    /**
+     * Watches a setting
+     *
+     * @param setting the setting
+     * @param handler the handler parsing the read setting off the main thread, and returning the task applying it on the main thread
+     */
+    public static void watch(@Nonnull BSetting setting, @Nonnull Function<BSetting, Runnable> handler) {
+        BValidate.notNull(setting);
+        BValidate.notNull(handler);
+
+        watches.put(setting.getFileName() + ".yml", new Watch(setting, handler));
+    }
+
+    /**
+     * Watches the data folder, on the watcher thread
+     *
+     * @param service   the watch service
+     * @param directory the data folder
+     * @param debounce  the delay in milliseconds without change before reloading a file
+     */
+    private static void watch(@Nonnull WatchService service, @Nonnull Path directory, int debounce) {
+        Map<String, Long> deadlines = new HashMap<>();
+
+        try {
+            while (true) {
+
+                //Waits the next change, or the next debounced file
+                long timeout = deadlines.values().stream().mapToLong(deadline -> deadline - System.currentTimeMillis()).min().orElse(Long.MAX_VALUE);
+                WatchKey key = timeout == Long.MAX_VALUE ? service.take() : service.poll(Math.max(0, timeout), TimeUnit.MILLISECONDS);
+
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.context() instanceof Path path && watches.containsKey(path.toString())) {
+                            deadlines.put(path.toString(), System.currentTimeMillis() + debounce);
+                        }
+                    }
+                    key.reset();
+                }
+
+                //Reloads the files without change since the debounce delay
+                long now = System.currentTimeMillis();
+                deadlines.entrySet().removeIf(deadline -> {
+                    if (deadline.getValue() > now) {
+                        return false;
+                    }
+
+                    reload(watches.get(deadline.getKey()), directory.resolve(deadline.getKey()));
+                    return true;
+                });
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+
+            //The watcher is stopped
+        }
+    }
+
+    /**
+     * Reloads a changed setting
+     *
+     * @param watch the watched setting
+     * @param file  the setting file
+     */
+    private static void reload(@Nonnull Watch watch, @Nonnull Path file) {
+        BValidate.notNull(watch);
+        BValidate.notNull(file);
+
+        BSetting setting = watch.setting();
+
+        //If the file is our own last write, no need to continue
+        if (BSetting.checksum(file) == setting.getChecksum()) {
+            return;
+        }
+
+        //The pending in-game changes would overwrite the file anyway
+        if (BSettingWriter.isPending(setting)) {
+            BCrateCore.getBLogger().warn("Ignored the change of the " + file.getFileName() + " file, it has unsaved in-game changes.");
+            return;
+        }
+
+        try {
+            long start = System.nanoTime();
+            BSetting read = setting.read();
+            Runnable task = watch.handler().apply(read);
+
+            BScheduler.syncScheduler().run(() -> {
+                setting.apply(read);
+                task.run();
+                BCrateCore.getBLogger().info("Reloaded the " + file.getFileName() + " file in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+            });
+        } catch (Exception e) {
+            BCrateCore.getBLogger().error("Could not reload the " + file.getFileName() + " file!", e);
+        }
+    }
+
+}
@@ -0,0 +1,339 @@
+package fr.bobinho.bcrate.api.setting;
+
+import fr.bobinho.bcrate.BCrateCore;
+import fr.bobinho.bcrate.api.scheduler.BScheduler;
+import fr.bobinho.bcrate.api.validate.BValidate;
+import org.bukkit.Bukkit;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bobinho write-behind setting writer
+ * <p>
+ * Saves are merged in memory and flushed to the disk by a dedicated thread,
+ * either every interval or as soon as the number of pending saves reaches the threshold.
+ */
+public final class BSettingWriter {
+
+    /**
+     * Fields
+     */
+    private static final Object lock = new Object();
+    private static final Set<BSetting> pending = new LinkedHashSet<>();
+    private static final Map<BSetting, Integer> writing = new ConcurrentHashMap<>();
+    private static final Set<BSetting> failed = ConcurrentHashMap.newKeySet();
+    private static final AtomicLong mergedWrites = new AtomicLong();
+    private static final AtomicLong flushedWrites = new AtomicLong();
+    private static final AtomicLong lastFlushLag = new AtomicLong();
+    private static final AtomicLong maxFlushLag = new AtomicLong();
+    private static volatile ExecutorService executor;
+    private static BScheduler flushScheduler;
+    private static int threshold;
+    private static volatile boolean writeBehind;
+    private static int pendingSaves;
+    private static long firstPendingTime;
+
+    /**
+     * Unitilizable constructor (utility class)
+     */
+    private BSettingWriter() {
+    }
+
+    /**
+     * Starts the write-behind writer
+     *
+     * @param interval  the flush interval in ticks
+     * @param threshold the number of pending saves forcing a flush
+     */
+    public static void start(int interval, int threshold) {
+        start(interval, threshold, true);
+    }
+
+    /**
+     * Starts the writer without write-behind, each save being written immediately but still off the main thread
+     */
+    public static void startImmediate() {
+        start(1, 1, false);
+    }
+
+    /**
+     * Starts the writer
+     *
+     * @param interval    the flush interval in ticks
+     * @param threshold   the number of pending saves forcing a flush
+     * @param writeBehind true if the saves are merged with the pending ones, false if they are written immediately
+     */
+    private static void start(int interval, int threshold, boolean writeBehind) {
+        BValidate.isTrue(interval > 0);
+        BValidate.isTrue(threshold > 0);
+
+        synchronized (lock) {
+            if (isEnabled()) {
+                return;
+            }
+
+            BSettingWriter.threshold = threshold;
+            BSettingWriter.writeBehind = writeBehind;
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "BCrate-Writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        flushScheduler = BScheduler.syncScheduler().every(interval);
+        flushScheduler.run(BSettingWriter::flush);
+    }
+
+    /**
+     * Stops the write-behind writer and flushes all pending saves
+     *
+     * @return true if all settings are written, false if a write failed or could not be waited
+     */
+    public static boolean stop() {
+        synchronized (lock) {
+            if (!isEnabled()) {
+                return failed.isEmpty();
+            }
+        }
+
+        flushScheduler.stop();
+        flush();
+
+        ExecutorService current;
+        synchronized (lock) {
+            current = executor;
+            executor = null;
+        }
+
+        //Waits the last writes
+        current.shutdown();
+        try {
+            if (!current.awaitTermination(30, TimeUnit.SECONDS)) {
+                BCrateCore.getBLogger().error("Some settings could not be written in time!");
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        return failed.isEmpty();
+    }
+
+    /**
+     * Checks if the write-behind writer is enabled
+     *
+     * @return true if the write-behind writer is enabled, false otherwise
+     */
+    public static boolean isEnabled() {
+        return executor != null;
+    }
+
+    /**
+     * Checks if the writer merges the saves with the pending ones
+     *
+     * @return true if the writer is enabled with write-behind, false otherwise
+     */
+    public static boolean isWriteBehind() {
+        return isEnabled() && writeBehind;
+    }
+
+    /**
+     * Schedules the save of a setting
+     *
+     * @param setting the setting
+     */
+    static void schedule(@Nonnull BSetting setting) {
+        BValidate.notNull(setting);
+
+        boolean shouldFlush;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                firstPendingTime = System.currentTimeMillis();
+            }
+
+            //Merges the save with the pending one
+            if (!pending.add(setting)) {
+                mergedWrites.incrementAndGet();
+            }
+
+            shouldFlush = ++pendingSaves >= threshold;
+        }
+
+        //Flushes on the main thread, where the other settings are changed
+        if (shouldFlush) {
+            if (Bukkit.isPrimaryThread()) {
+                flush();
+            } else {
+                BScheduler.syncScheduler().run(BSettingWriter::flush);
+            }
+        }
+    }
+
+    /**
+     * Checks if a setting has a save not written yet
+     *
+     * @param setting the setting
+     * @return true if the setting has a save not written yet, false otherwise
+     */
+    public static boolean isPending(@Nonnull BSetting setting) {
+        BValidate.notNull(setting);
+
+        synchronized (lock) {
+            if (pending.contains(setting)) {
+                return true;
+            }
+        }
+
+        return writing.containsKey(setting);
+    }
+
+    /**
+     * Flushes all pending saves
+     */
+    public static void flush() {
+        List<BSetting> settings;
+        long dirtySince;
+
+        synchronized (lock) {
+            if (pending.isEmpty() || !isEnabled()) {
+                return;
+            }
+
+            settings = new ArrayList<>(pending);
+            dirtySince = firstPendingTime;
+            pending.clear();
+            pendingSaves = 0;
+        }
+
+        //Serializes on the calling thread, so the snapshot is consistent
+        settings.forEach(setting -> {
+            String content = setting.serialize();
+
+            writing.merge(setting, 1, Integer::sum);
+            submit(() -> {
+                written(setting, setting.write(content));
+                writing.computeIfPresent(setting, (key, count) -> count > 1 ? count - 1 : null);
+                flushedWrites.incrementAndGet();
+            });
+        });
+
+        submit(() -> {
+            long lag = System.currentTimeMillis() - dirtySince;
+
+            lastFlushLag.set(lag);
+            maxFlushLag.accumulateAndGet(lag, Math::max);
+        });
+    }
+
+    /**
+     * Records the result of the last write of a setting
+     *
+     * @param setting the setting
+     * @param success true if the setting was written, false otherwise
+     */
+    static void written(@Nonnull BSetting setting, boolean success) {
+        BValidate.notNull(setting);
+
+        if (success) {
+            failed.remove(setting);
+        } else {
+            failed.add(setting);
+        }
+    }
+
+    /**
+     * Waits until all flushed saves are written
+     * Must not be called from the writer thread.
+     *
+     * @return true if all settings are written, false if a write failed or could not be waited
+     */
+    public static boolean sync() {
+        ExecutorService current;
+        synchronized (lock) {
+            current = executor;
+        }
+
+        //Without the writer, saves are written immediately
+        if (current == null) {
+            return failed.isEmpty();
+        }
+
+        try {
+            current.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            BCrateCore.getBLogger().error("Could not wait the settings writes!", e);
+            return false;
+        }
+
+        return failed.isEmpty();
+    }
+
+    /**
+     * Submits a task to the writer thread
+     *
+     * @param task the task
+     */
+    private static void submit(@Nonnull Runnable task) {
+        synchronized (lock) {
+            if (executor != null) {
+                executor.execute(task);
+                return;
+            }
+        }
+
+        task.run();
+    }
+
+    /**
+     * Gets the lag, in milliseconds, between the first pending save and the end of the last flush
+     *
+     * @return the last flush lag
+     */
+    public static long getLastFlushLag() {
+        return lastFlushLag.get();
+    }
+
+    /**
+     * Gets the maximum flush lag, in milliseconds
+     *
+     * @return the maximum flush lag
+     */
+    public static long getMaxFlushLag() {
+        return maxFlushLag.get();
+    }
+
+    /**
+     * Gets the number of saves merged with a pending one
+     *
+     * @return the number of merged writes
+     */
+    public static long getMergedWrites() {
+        return mergedWrites.get();
+    }
+
+    /**
+     * Gets the number of files written
+     *
+     * @return the number of files written
+     */
+    public static long getFlushedWrites() {
+        return flushedWrites.get();
+    }
+
+}
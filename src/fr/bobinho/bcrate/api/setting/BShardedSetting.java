@@ -0,0 +1,311 @@
+package fr.bobinho.bcrate.api.setting;
+
+import fr.bobinho.bcrate.BCrateCore;
+import fr.bobinho.bcrate.api.validate.BValidate;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Bobinho sharded setting library
+ * <p>
+ * Each shard is a small setting file stored in a hash bucket of the setting directory,
+ * so loading and saving only touch the shards in use.
+ */
+public final class BShardedSetting {
+
+    /**
+     * Fields
+     */
+    private final String directoryName;
+    private final Map<String, BSetting> shards = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new sharded setting
+     *
+     * @param directoryName the setting directory name
+     */
+    public BShardedSetting(@Nonnull String directoryName) {
+        BValidate.notNull(directoryName);
+
+        this.directoryName = directoryName;
+    }
+
+    /**
+     * Gets the directory name
+     *
+     * @return the directory name
+     */
+    public @Nonnull String getDirectoryName() {
+        return directoryName;
+    }
+
+    /**
+     * Gets the directory
+     *
+     * @return the directory
+     */
+    private @Nonnull File getDirectory() {
+        return new File(BCrateCore.getInstance().getDataFolder(), directoryName);
+    }
+
+    /**
+     * Gets the file name of a shard, relative to the data folder
+     *
+     * @param shard the shard
+     * @return the file name of the shard
+     */
+    private @Nonnull String getFileName(@Nonnull String shard) {
+        BValidate.notNull(shard);
+
+        return directoryName + "/" + String.format("%02x", shard.hashCode() & 0xFF) + "/" + shard;
+    }
+
+    /**
+     * Gets the names of all stored shards
+     *
+     * @return the names of all stored shards
+     */
+    public @Nonnull Set<String> getShards() {
+        if (!getDirectory().isDirectory()) {
+            return Collections.emptySet();
+        }
+
+        try (Stream<Path> files = Files.walk(getDirectory().toPath(), 2)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(".yml"))
+                    .map(name -> name.substring(0, name.length() - 4))
+                    .collect(HashSet::new, Set::add, Set::addAll);
+        } catch (IOException e) {
+            BCrateCore.getBLogger().error("Could not list the " + directoryName + " shards!", e);
+            return Collections.emptySet();
+        }
+    }
+
+    /**
+     * Checks if the shard is stored
+     *
+     * @param shard the shard
+     * @return true if the shard is stored, false otherwise
+     */
+    public boolean exists(@Nonnull String shard) {
+        BValidate.notNull(shard);
+
+        return shards.containsKey(shard) || new File(BCrateCore.getInstance().getDataFolder(), getFileName(shard) + ".yml").exists();
+    }
+
+    /**
+     * Checks if the shard is loaded
+     *
+     * @param shard the shard
+     * @return true if the shard is loaded, false otherwise
+     */
+    public boolean isLoaded(@Nonnull String shard) {
+        BValidate.notNull(shard);
+
+        return shards.containsKey(shard);
+    }
+
+    /**
+     * Gets a shard, loading it if needed
+     * The shards are still synced when written, but keep no backup, rolling one for each shard would double its writes.
+     *
+     * @param shard the shard
+     * @return the shard setting
+     */
+    public @Nonnull BSetting get(@Nonnull String shard) {
+        BValidate.notNull(shard);
+
+        return shards.computeIfAbsent(shard, name -> new BSetting(getFileName(name), false, false));
+    }
+
+    /**
+     * Unloads a shard, without saving it
+     *
+     * @param shard the shard
+     */
+    public void unload(@Nonnull String shard) {
+        BValidate.notNull(shard);
+
+        shards.remove(shard);
+    }
+
+    /**
+     * Unloads all shards, without saving them
+     */
+    public void unloadAll() {
+        shards.clear();
+    }
+
+    /**
+     * Deletes a shard
+     *
+     * @param shard the shard
+     */
+    public void delete(@Nonnull String shard) {
+        BValidate.notNull(shard);
+
+        shards.remove(shard);
+        try {
+            Files.deleteIfExists(new File(BCrateCore.getInstance().getDataFolder(), getFileName(shard) + ".yml").toPath());
+        } catch (IOException e) {
+            BCrateCore.getBLogger().error("Could not delete the " + shard + " shard!", e);
+        }
+    }
+
+    /**
+     * Migrates a monolithic setting file into shards
+     * The file is streamed line by line: each root section becomes a shard containing its direct values.
+     * The shards are written without backup nor sync, then all synced at once, and only then the file is renamed
+     * with the .migrated suffix, so an interrupted migration is simply run again.
+     *
+     * @param fileName the monolithic setting file name
+     * @return the number of migrated shards
+     */
+    public int migrate(@Nonnull String fileName) {
+        BValidate.notNull(fileName);
+
+        File file = new File(BCrateCore.getInstance().getDataFolder(), fileName + ".yml");
+
+        //If there is nothing to migrate, no need to continue
+        if (!file.exists()) {
+            return 0;
+        }
+
+        List<Path> written = new ArrayList<>();
+        String current = null;
+        Map<String, Object> values = new LinkedHashMap<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+
+                //Skips empty lines and comments
+                if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.equals("{}")) {
+                    continue;
+                }
+
+                //New root section, writes the previous one
+                if (!Character.isWhitespace(line.charAt(0))) {
+                    if (current != null) {
+                        write(current, values, written);
+                    }
+
+                    current = trimmed.endsWith(":") ? unquote(trimmed.substring(0, trimmed.length() - 1)) : null;
+                    values.clear();
+                    continue;
+                }
+
+                int separator = trimmed.indexOf(": ");
+
+                //Keeps direct values of the current section
+                if (current != null && separator != -1) {
+                    values.put(unquote(trimmed.substring(0, separator)), parse(trimmed.substring(separator + 2)));
+                }
+            }
+
+            if (current != null) {
+                write(current, values, written);
+            }
+
+            //Makes all shards durable before the file is renamed
+            for (Path path : written) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+        } catch (IOException e) {
+            BCrateCore.getBLogger().error("Could not migrate the " + fileName + ".yml file!", e);
+            return written.size();
+        }
+
+        int migrated = written.size();
+
+        try {
+            Files.move(file.toPath(), new File(file.getParentFile(), fileName + ".yml.migrated").toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            BCrateCore.getBLogger().error("Could not rename the " + fileName + ".yml file!", e);
+        }
+
+        BCrateCore.getBLogger().info("Successfully migrated " + migrated + " " + fileName + " entries.");
+
+        return migrated;
+    }
+
+    /**
+     * Writes migrated values to a shard and releases it
+     *
+     * @param shard   the shard
+     * @param values  the values
+     * @param written the written shard files, receiving this one
+     * @throws IOException if the shard could not be written
+     */
+    private void write(@Nonnull String shard, @Nonnull Map<String, Object> values, @Nonnull List<Path> written) throws IOException {
+        BValidate.notNull(shard);
+        BValidate.notNull(values);
+        BValidate.notNull(written);
+
+        if (values.isEmpty()) {
+            return;
+        }
+
+        //Writes synchronously, the shard must be on the disk before being loaded again
+        BSetting setting = get(shard);
+        values.forEach(setting::set);
+        boolean success = setting.writeUnsynced(setting.serialize());
+        unload(shard);
+
+        //If the shard could not be written, the migration stops and will be run again
+        if (!success) {
+            throw new IOException("Could not write the " + shard + " shard!");
+        }
+
+        written.add(new File(BCrateCore.getInstance().getDataFolder(), getFileName(shard) + ".yml").toPath());
+    }
+
+    /**
+     * Removes the quotes around a scalar
+     *
+     * @param scalar the scalar
+     * @return the unquoted scalar
+     */
+    private static @Nonnull String unquote(@Nonnull String scalar) {
+        BValidate.notNull(scalar);
+
+        if (scalar.length() >= 2 && (scalar.startsWith("'") && scalar.endsWith("'") || scalar.startsWith("\"") && scalar.endsWith("\""))) {
+            return scalar.substring(1, scalar.length() - 1).replace("''", "'");
+        }
+
+        return scalar;
+    }
+
+    /**
+     * Parses a scalar value
+     *
+     * @param scalar the scalar
+     * @return the parsed value
+     */
+    private static @Nonnull Object parse(@Nonnull String scalar) {
+        BValidate.notNull(scalar);
+
+        try {
+            return Integer.parseInt(scalar);
+        } catch (NumberFormatException e) {
+            return unquote(scalar);
+        }
+    }
+
+}
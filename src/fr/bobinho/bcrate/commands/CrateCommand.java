@@ -1,21 +1,41 @@
 package fr.bobinho.bcrate.commands;
 
 import co.aikar.commands.annotation.*;
+import fr.bobinho.bcrate.BCrateCore;
 import fr.bobinho.bcrate.api.command.BCommand;
 import fr.bobinho.bcrate.api.item.BItemBuilder;
 import fr.bobinho.bcrate.api.location.BLocation;
 import fr.bobinho.bcrate.api.notification.BPlaceHolder;
+import fr.bobinho.bcrate.api.scheduler.BScheduler;
+import fr.bobinho.bcrate.api.setting.BSettingWriter;
+import fr.bobinho.bcrate.util.claim.ClaimManager;
+import fr.bobinho.bcrate.util.claim.notification.ClaimNotification;
+import fr.bobinho.bcrate.util.crate.Crate;
 import fr.bobinho.bcrate.util.crate.CrateManager;
+import fr.bobinho.bcrate.util.crate.audit.CrateAudit;
 import fr.bobinho.bcrate.util.crate.edit.color.Color;
 import fr.bobinho.bcrate.util.crate.edit.size.Size;
 import fr.bobinho.bcrate.util.crate.notification.CrateNotification;
+import fr.bobinho.bcrate.util.crate.simulation.CrateSimulation;
+import fr.bobinho.bcrate.util.crate.simulation.CrateSimulator;
 import fr.bobinho.bcrate.util.key.Key;
 import fr.bobinho.bcrate.util.key.KeyManager;
+import fr.bobinho.bcrate.util.key.notification.KeyNotification;
+import fr.bobinho.bcrate.util.player.PlayerManager;
+import fr.bobinho.bcrate.util.player.notification.PlayerNotification;
+import fr.bobinho.bcrate.util.prize.Prize;
+import fr.bobinho.bcrate.util.prize.PrizeManager;
+import fr.bobinho.bcrate.util.prize.PrizeSampler;
+import fr.bobinho.bcrate.util.prize.stock.StockManager;
 import fr.bobinho.bcrate.util.tag.TagManager;
+import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
 
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -126,10 +146,367 @@ public final class CrateCommand extends BCommand {
         //Loads the plugin
         KeyManager.reload();
         TagManager.reload();
-        CrateManager.reload();
+
+        //Messages once the crates are reloaded
+        CrateManager.reload(() -> sender.sendMessage(CrateNotification.CRATE_RELOADED.getNotification()));
+    }
+
+    /**
+     * Command crate rewards
+     */
+    @Syntax("/crate rewards <name> <count> <distinct>")
+    @Subcommand("rewards")
+    @CommandPermission("crate.rewards")
+    @Description("Changes the number of prizes won by open.")
+    @CommandCompletion("@crates @empty true|false")
+    public void onCommandCrateRewards(Player sender, String name, int count, boolean distinct) {
+
+        //Checks if the crate is not registered
+        if (!CrateManager.isRegistered(name)) {
+            sender.sendMessage(CrateNotification.CRATE_NOT_REGISTERED.getNotification(new BPlaceHolder("%name%", name)));
+            return;
+        }
+
+        //Checks if the count is valid
+        int max = Size.values()[Size.values().length - 1].getDimension();
+        if (count < 1 || count > max) {
+            sender.sendMessage(CrateNotification.CRATE_INVALID_REWARDS.getNotification(
+                    new BPlaceHolder("%count%", String.valueOf(count)),
+                    new BPlaceHolder("%max%", String.valueOf(max))));
+            return;
+        }
+
+        //Changes the rewards
+        CrateManager.changeRewards(name, count, distinct);
+
+        //Messages
+        sender.sendMessage(CrateNotification.CRATE_REWARDS_CHANGED.getNotification(
+                new BPlaceHolder("%name%", name),
+                new BPlaceHolder("%count%", String.valueOf(count)),
+                new BPlaceHolder("%distinct%", String.valueOf(distinct))));
+    }
+
+    /**
+     * Command crate pity
+     */
+    @Syntax("/crate pity <name> <opens>")
+    @Subcommand("pity")
+    @CommandPermission("crate.pity")
+    @Description("Changes the number of opens without rare prize before one is forced.")
+    @CommandCompletion("@crates @empty")
+    public void onCommandCratePity(Player sender, String name, int opens) {
+
+        //Checks if the crate is not registered
+        if (!CrateManager.isRegistered(name)) {
+            sender.sendMessage(CrateNotification.CRATE_NOT_REGISTERED.getNotification(new BPlaceHolder("%name%", name)));
+            return;
+        }
+
+        //Checks if the number of opens is valid
+        if (opens < 0) {
+            sender.sendMessage(CrateNotification.CRATE_INVALID_PITY.getNotification(new BPlaceHolder("%opens%", String.valueOf(opens))));
+            return;
+        }
+
+        //Changes the pity
+        CrateManager.changePity(name, opens);
+
+        //Messages
+        sender.sendMessage(CrateNotification.CRATE_PITY_CHANGED.getNotification(
+                new BPlaceHolder("%name%", name),
+                new BPlaceHolder("%opens%", String.valueOf(opens))));
+    }
+
+    /**
+     * Command crate pool
+     */
+    @Syntax("/crate pool <name> <amount>")
+    @Subcommand("pool")
+    @CommandPermission("crate.pool")
+    @Description("Sets the remaining amount of a stock pool shared by limited prizes.")
+    @CommandCompletion("@empty @empty")
+    public void onCommandCratePool(Player sender, String name, int amount) {
+
+        //Checks if the amount is valid
+        if (amount < 0) {
+            sender.sendMessage(CrateNotification.CRATE_INVALID_STOCK.getNotification(new BPlaceHolder("%amount%", String.valueOf(amount))));
+            return;
+        }
+
+        //Sets the pool
+        StockManager.set(name, amount);
+
+        //Messages
+        sender.sendMessage(CrateNotification.CRATE_POOL_CHANGED.getNotification(
+                new BPlaceHolder("%name%", name),
+                new BPlaceHolder("%amount%", String.valueOf(amount))));
+    }
+
+    /**
+     * Command crate stock
+     */
+    @Syntax("/crate stock <name> <slot> <pool|none>")
+    @Subcommand("stock")
+    @CommandPermission("crate.stock")
+    @Description("Limits a prize by a stock pool, or makes it unlimited again.")
+    @CommandCompletion("@crates @empty @empty")
+    public void onCommandCrateStock(Player sender, String name, int slot, String pool) {
+
+        //Checks if the crate is not registered
+        Optional<Crate> crate = CrateManager.get(name);
+        if (crate.isEmpty()) {
+            sender.sendMessage(CrateNotification.CRATE_NOT_REGISTERED.getNotification(new BPlaceHolder("%name%", name)));
+            return;
+        }
+
+        //Checks if the prize is not registered
+        Optional<Prize> prize = PrizeManager.get(crate.get(), slot);
+        if (prize.isEmpty()) {
+            sender.sendMessage(CrateNotification.CRATE_PRIZE_NOT_FOUND.getNotification(
+                    new BPlaceHolder("%name%", name),
+                    new BPlaceHolder("%slot%", String.valueOf(slot))));
+            return;
+        }
+
+        //Changes the stock pool
+        PrizeManager.changeStock(prize.get(), pool.equalsIgnoreCase("none") ? null : pool);
+        CrateManager.save();
+
+        //Messages
+        sender.sendMessage(CrateNotification.CRATE_STOCK_CHANGED.getNotification(
+                new BPlaceHolder("%name%", name),
+                new BPlaceHolder("%slot%", String.valueOf(slot)),
+                new BPlaceHolder("%pool%", pool)));
+    }
+
+    /**
+     * Command crate open
+     */
+    @Syntax("/crate open <name> <count>")
+    @Subcommand("open")
+    @CommandPermission("crate.open")
+    @Description("Opens several crates at once.")
+    @CommandCompletion("@crates @empty")
+    public void onCommandCrateOpen(Player sender, String name, int count) {
+        Optional<Crate> crate = CrateManager.get(name);
+
+        //Checks if the crate is not registered
+        if (crate.isEmpty()) {
+            sender.sendMessage(CrateNotification.CRATE_NOT_REGISTERED.getNotification(new BPlaceHolder("%name%", name)));
+            return;
+        }
+
+        //Checks if the count is valid
+        int max = BCrateCore.getConfigSetting().isInt("crate.mass-open.max-count").orElse(10000);
+        if (count < 1 || count > max) {
+            sender.sendMessage(CrateNotification.CRATE_INVALID_COUNT.getNotification(
+                    new BPlaceHolder("%count%", String.valueOf(count)),
+                    new BPlaceHolder("%max%", String.valueOf(max))));
+            return;
+        }
+
+        //Checks if the crate is empty
+        if (crate.get().sampler().isEmpty()) {
+            sender.sendMessage(CrateNotification.CRATE_IS_EMPTY.getNotification());
+            return;
+        }
+
+        //Checks if the player is already opening a crate
+        if (PlayerManager.isOpeningCrate(sender.getUniqueId())) {
+            sender.sendMessage(PlayerNotification.PLAYER_ALREADY_USED_CRATE.getNotification());
+            return;
+        }
+
+        Key key = crate.get().key().get();
+        int balance = PlayerManager.getKeyNumberWithdrawable(sender.getUniqueId(), key);
+
+        //Checks if the player has enough keys
+        if (balance < count) {
+            sender.sendMessage(KeyNotification.KEY_YOU_NOT_ENOUGH_TO_WITHDRAW.getNotification(
+                    new BPlaceHolder("%amount%", String.valueOf(balance)),
+                    new BPlaceHolder("%name%", key.name().get())));
+            return;
+        }
+
+        //Opens the crates
+        long claimable = ClaimManager.count(sender.getUniqueId());
+        Map<Prize, Integer> prizes = CrateManager.open(sender, crate.get(), count);
+
+        //Messages
+        sender.sendMessage(CrateNotification.CRATE_MASS_OPENED.getNotification(
+                new BPlaceHolder("%count%", String.valueOf(count)),
+                new BPlaceHolder("%name%", name)));
+        prizes.forEach((prize, times) -> {
+            ItemStack item = prize.item().get();
+            String amount = String.valueOf((long) times * item.getAmount());
+            String itemName = (item.hasItemMeta() && item.getItemMeta().hasDisplayName()) ? item.getItemMeta().getDisplayName() : item.getType().name().replace("_", " ");
+
+            sender.sendMessage(CrateNotification.CRATE_PRIZE_INFO.getNotification(
+                    new BPlaceHolder("%amount%", amount),
+                    new BPlaceHolder("%name%", itemName)));
+
+            if (prize.rarity().get()) {
+                Bukkit.getOnlinePlayers().forEach(receiver -> receiver.sendMessage(CrateNotification.CRATE_PRIZE_INFO_GLOBAL.getNotification(
+                        new BPlaceHolder("%name%", sender.getName()),
+                        new BPlaceHolder("%amount%", amount),
+                        new BPlaceHolder("%item%", itemName))));
+            }
+        });
+
+        long overflow = ClaimManager.count(sender.getUniqueId()) - claimable;
+        if (overflow > 0) {
+            sender.sendMessage(ClaimNotification.CLAIM_OVERFLOW.getNotification(new BPlaceHolder("%amount%", String.valueOf(overflow))));
+        }
+    }
+
+    /**
+     * Command crate simulate
+     */
+    @Syntax("/crate simulate <name> <draws>")
+    @Subcommand("simulate")
+    @CommandPermission("crate.simulate")
+    @Description("Verifies the drop rates of a crate.")
+    @CommandCompletion("@crates @empty")
+    public void onCommandCrateSimulate(Player sender, String name, long draws) {
+        Optional<Crate> crate = CrateManager.get(name);
+
+        //Checks if the crate is not registered
+        if (crate.isEmpty()) {
+            sender.sendMessage(CrateNotification.CRATE_NOT_REGISTERED.getNotification(new BPlaceHolder("%name%", name)));
+            return;
+        }
+
+        //Checks if the number of draws is valid
+        long max = BCrateCore.getConfigSetting().isInt("crate.simulation.max-draws").orElse(100_000_000);
+        if (draws < 1 || draws > max) {
+            sender.sendMessage(CrateNotification.CRATE_INVALID_DRAWS.getNotification(
+                    new BPlaceHolder("%draws%", String.valueOf(draws)),
+                    new BPlaceHolder("%max%", String.valueOf(max))));
+            return;
+        }
+
+        //Checks if the crate is empty
+        if (crate.get().sampler().isEmpty()) {
+            sender.sendMessage(CrateNotification.CRATE_IS_EMPTY.getNotification());
+            return;
+        }
+
+        PrizeSampler sampler = crate.get().sampler();
+        sender.sendMessage(CrateNotification.CRATE_SIMULATION_STARTED.getNotification(
+                new BPlaceHolder("%draws%", String.valueOf(draws)),
+                new BPlaceHolder("%name%", name)));
+
+        //Simulates off the main thread, then messages on it
+        BScheduler.asyncScheduler().run(() -> {
+            CrateSimulation simulation = CrateSimulator.simulate(sampler, draws);
+
+            BScheduler.syncScheduler().run(() -> {
+                for (int i = 0; i < simulation.getPrizes().size(); i++) {
+                    Prize prize = simulation.getPrizes().get(i);
+                    ItemStack item = prize.item().get();
+
+                    sender.sendMessage(CrateNotification.CRATE_SIMULATION_PRIZE.getNotification(
+                            new BPlaceHolder("%slot%", String.valueOf(prize.slot().get())),
+                            new BPlaceHolder("%name%", (item.hasItemMeta() && item.getItemMeta().hasDisplayName()) ? item.getItemMeta().getDisplayName() : item.getType().name().replace("_", " ")),
+                            new BPlaceHolder("%observed%", String.format("%.4f", simulation.getObservedProbability(i) * 100)),
+                            new BPlaceHolder("%expected%", String.format("%.4f", simulation.getExpectedProbability(i) * 100)),
+                            new BPlaceHolder("%chance%", String.valueOf(prize.chance().get()))));
+                }
+
+                sender.sendMessage(CrateNotification.CRATE_SIMULATION_RESULT.getNotification(
+                        new BPlaceHolder("%draws%", String.valueOf(simulation.getDraws())),
+                        new BPlaceHolder("%time%", String.valueOf(simulation.getDuration() / 1_000_000)),
+                        new BPlaceHolder("%rate%", String.format("%.0f", simulation.getDrawsPerSecond())),
+                        new BPlaceHolder("%chisquare%", String.format("%.2f", simulation.getChiSquare())),
+                        new BPlaceHolder("%degrees%", String.valueOf(simulation.getDegreesOfFreedom())),
+                        new BPlaceHolder("%pvalue%", String.format("%.4f", simulation.getPValue()))));
+            });
+        });
+    }
+
+    /**
+     * Command crate replay
+     */
+    @Syntax("/crate replay <id>")
+    @Subcommand("replay")
+    @CommandPermission("crate.replay")
+    @Description("Replays an audited crate open.")
+    public void onCommandCrateReplay(Player sender, String id) {
+
+        //Reads the audit off the main thread, then replays on it
+        BScheduler.asyncScheduler().run(() -> {
+            Optional<CrateAudit.Entry> entry = CrateAudit.find(id);
+
+            BScheduler.syncScheduler().run(() -> {
+
+                //Checks if the open is not audited
+                if (entry.isEmpty()) {
+                    sender.sendMessage(CrateNotification.CRATE_AUDIT_NOT_FOUND.getNotification(new BPlaceHolder("%id%", id)));
+                    return;
+                }
+
+                Optional<Map<Integer, Integer>> replayed = CrateManager.replay(entry.get());
+
+                //Checks if the crate is not registered anymore
+                if (replayed.isEmpty()) {
+                    sender.sendMessage(CrateNotification.CRATE_NOT_REGISTERED.getNotification(new BPlaceHolder("%name%", entry.get().crate())));
+                    return;
+                }
+
+                boolean sameTable = CrateManager.get(entry.get().crate()).map(crate -> crate.sampler().getFingerprint() == entry.get().fingerprint()).orElse(false);
+
+                //Messages
+                sender.sendMessage(CrateNotification.CRATE_AUDIT_INFO.getNotification(
+                        new BPlaceHolder("%id%", entry.get().id()),
+                        new BPlaceHolder("%player%", Optional.ofNullable(Bukkit.getOfflinePlayer(entry.get().player()).getName()).orElse(entry.get().player().toString())),
+                        new BPlaceHolder("%name%", entry.get().crate()),
+                        new BPlaceHolder("%time%", new Date(entry.get().time()).toString()),
+                        new BPlaceHolder("%opens%", String.valueOf(entry.get().opens())),
+                        new BPlaceHolder("%rewards%", String.valueOf(entry.get().rewards())),
+                        new BPlaceHolder("%slots%", entry.get().slots().toString())));
+                sender.sendMessage((!sameTable ? CrateNotification.CRATE_AUDIT_TABLE_CHANGED
+                        : entry.get().redraws() > 0 && entry.get().failed().isEmpty() ? CrateNotification.CRATE_AUDIT_STOCK_CHANGED
+                        : replayed.get().equals(entry.get().slots()) ? CrateNotification.CRATE_AUDIT_MATCH : CrateNotification.CRATE_AUDIT_MISMATCH).getNotification(
+                        new BPlaceHolder("%slots%", replayed.get().toString())));
+            });
+        });
+    }
+
+    /**
+     * Command crate claim
+     */
+    @Syntax("/crate claim")
+    @Subcommand("claim")
+    @CommandPermission("crate.claim")
+    @Description("Opens the prizes which did not fit in the inventory.")
+    public void onCommandCrateClaim(Player sender) {
+
+        //Checks if the player has nothing to claim
+        if (ClaimManager.count(sender.getUniqueId()) == 0) {
+            sender.sendMessage(ClaimNotification.CLAIM_EMPTY.getNotification());
+            return;
+        }
+
+        //Opens the claims
+        ClaimManager.openMenu(sender);
+    }
+
+    /**
+     * Command crate storage
+     */
+    @Syntax("/crate storage")
+    @Subcommand("storage")
+    @CommandPermission("crate.storage")
+    @Description("Gets the storage statistics.")
+    public void onCommandCrateStorage(Player sender) {
 
         //Messages
-        sender.sendMessage(CrateNotification.CRATE_RELOADED.getNotification());
+        sender.sendMessage(CrateNotification.CRATE_STORAGE_STATS.getNotification(
+                new BPlaceHolder("%enabled%", String.valueOf(BSettingWriter.isWriteBehind())),
+                new BPlaceHolder("%written%", String.valueOf(BSettingWriter.getFlushedWrites())),
+                new BPlaceHolder("%merged%", String.valueOf(BSettingWriter.getMergedWrites())),
+                new BPlaceHolder("%lag%", String.valueOf(BSettingWriter.getLastFlushLag())),
+                new BPlaceHolder("%maxlag%", String.valueOf(BSettingWriter.getMaxFlushLag()))));
     }
 
 }
\ No newline at end of file
@@ -10,6 +10,7 @@ import fr.bobinho.bcrate.util.player.PlayerManager;
 import fr.bobinho.bcrate.util.player.notification.PlayerNotification;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 
 import java.util.Optional;
@@ -153,16 +154,10 @@ public final class KeyCommand extends BCommand {
     @CommandCompletion("@players @empty @keys @empty")
     public void onCommandKeysDeposit(Player sender, String receiver, int amount, String name) {
 
-        Optional<Player> player = Optional.ofNullable(Bukkit.getPlayer(receiver));
+        Optional<OfflinePlayer> player = Optional.ofNullable(Bukkit.getOfflinePlayerIfCached(receiver));
 
-        //Checks if the player is online
+        //Checks if the receiver has already played, offline receivers are edited directly on the storage
         if (player.isEmpty()) {
-            sender.sendMessage(CrateNotification.UTIL_NOT_ONLINE.getNotification(new BPlaceHolder("%name%", receiver)));
-            return;
-        }
-
-        //Checks if the receiver is registered
-        if (!PlayerManager.isRegistered(player.get().getUniqueId())) {
             sender.sendMessage(PlayerNotification.PLAYER_NOT_REGISTERED.getNotification(new BPlaceHolder("%name%", receiver)));
             return;
         }
@@ -180,8 +175,8 @@ public final class KeyCommand extends BCommand {
         });
 
         //Messages
-        player.get().sendMessage(PlayerNotification.PLAYER_RECEIVE_KEY.getNotification(new BPlaceHolder("%name%", name), new BPlaceHolder("%amount%", String.valueOf(amount))));
-        sender.sendMessage(PlayerNotification.PLAYER_GIVE_KEY.getNotification(new BPlaceHolder("%name%", name), new BPlaceHolder("%amount%", String.valueOf(amount)), new BPlaceHolder("%player%", player.get().getName())));
+        Optional.ofNullable(player.get().getPlayer()).ifPresent(online -> online.sendMessage(PlayerNotification.PLAYER_RECEIVE_KEY.getNotification(new BPlaceHolder("%name%", name), new BPlaceHolder("%amount%", String.valueOf(amount)))));
+        sender.sendMessage(PlayerNotification.PLAYER_GIVE_KEY.getNotification(new BPlaceHolder("%name%", name), new BPlaceHolder("%amount%", String.valueOf(amount)), new BPlaceHolder("%player%", Optional.ofNullable(player.get().getName()).orElse(receiver))));
     }
 
     /**
@@ -194,16 +189,10 @@ public final class KeyCommand extends BCommand {
     @CommandCompletion("@players @empty @keys @empty")
     public void onCommandKeysWithdraw(Player sender, String receiver, int amount, String name) {
 
-        Optional<Player> player = Optional.ofNullable(Bukkit.getPlayer(receiver));
+        Optional<OfflinePlayer> player = Optional.ofNullable(Bukkit.getOfflinePlayerIfCached(receiver));
 
-        //Checks if the player is online
+        //Checks if the receiver has already played, offline receivers are edited directly on the storage
         if (player.isEmpty()) {
-            sender.sendMessage(CrateNotification.UTIL_NOT_ONLINE.getNotification(new BPlaceHolder("%name%", receiver)));
-            return;
-        }
-
-        //Checks if the receiver is registered
-        if (!PlayerManager.isRegistered(player.get().getUniqueId())) {
             sender.sendMessage(PlayerNotification.PLAYER_NOT_REGISTERED.getNotification(new BPlaceHolder("%name%", receiver)));
             return;
         }
@@ -221,8 +210,8 @@ public final class KeyCommand extends BCommand {
         });
 
         //Messages
-        player.get().sendMessage(PlayerNotification.PLAYER_LOOSE_KEY.getNotification(new BPlaceHolder("%name%", name), new BPlaceHolder("%amount%", String.valueOf(amount))));
-        sender.sendMessage(PlayerNotification.PLAYER_REMOVE_KEY.getNotification(new BPlaceHolder("%name%", name), new BPlaceHolder("%amount%", String.valueOf(amount)), new BPlaceHolder("%player%", player.get().getName())));
+        Optional.ofNullable(player.get().getPlayer()).ifPresent(online -> online.sendMessage(PlayerNotification.PLAYER_LOOSE_KEY.getNotification(new BPlaceHolder("%name%", name), new BPlaceHolder("%amount%", String.valueOf(amount)))));
+        sender.sendMessage(PlayerNotification.PLAYER_REMOVE_KEY.getNotification(new BPlaceHolder("%name%", name), new BPlaceHolder("%amount%", String.valueOf(amount)), new BPlaceHolder("%player%", Optional.ofNullable(player.get().getName()).orElse(receiver))));
     }
 
     /**
@@ -0,0 +1,298 @@
+package fr.bobinho.bcrate.util.claim;
+
+import fr.bobinho.bcrate.BCrateCore;
+import fr.bobinho.bcrate.api.item.BItemStack;
+import fr.bobinho.bcrate.api.setting.BSetting;
+import fr.bobinho.bcrate.api.validate.BValidate;
+import fr.bobinho.bcrate.util.claim.listener.ClaimListener;
+import fr.bobinho.bcrate.util.claim.ux.ClaimMenu;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+
+/**
+ * Manager class for claims, the prizes which did not fit in the inventory of their winner
+ * <p>
+ * The prizes of an open are also held in the claim file from the roll until their delivery,
+ * so an open interrupted by a quit, a stop or a crash is delivered as claims.
+ */
+public class ClaimManager {
+
+    /**
+     * Fields
+     */
+    private static final HashMap<UUID, List<ItemStack>> claims = new HashMap<>();
+    private static final HashMap<UUID, List<ItemStack>> held = new HashMap<>();
+    private static final BSetting configuration = BCrateCore.getClaimSetting();
+    private static final String HELD = "held";
+
+    /**
+     * Registers the claim manager
+     */
+    public static void register() {
+        load();
+        ClaimListener.registerEvents();
+    }
+
+    /**
+     * Unregisters the claim manager
+     */
+    public static void unregister() {
+        save();
+    }
+
+    /**
+     * Gets the claimable items of a player
+     *
+     * @param uuid the uuid
+     * @return the claimable items
+     */
+    public static @Nonnull List<ItemStack> get(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+
+        return List.copyOf(claims.getOrDefault(uuid, Collections.emptyList()));
+    }
+
+    /**
+     * Counts the claimable items of a player
+     *
+     * @param uuid the uuid
+     * @return the number of claimable items
+     */
+    public static long count(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+
+        return BItemStack.count(claims.getOrDefault(uuid, Collections.emptyList()));
+    }
+
+    /**
+     * Adds claimable items to a player
+     *
+     * @param uuid  the uuid
+     * @param items the items
+     */
+    public static void add(@Nonnull UUID uuid, @Nonnull Collection<ItemStack> items) {
+        BValidate.notNull(uuid);
+        BValidate.notNull(items);
+
+        //If there is nothing to add, no need to continue
+        if (items.isEmpty()) {
+            return;
+        }
+
+        merge(uuid, items);
+        configuration.save();
+    }
+
+    /**
+     * Merges claimable items into the claims of a player, without saving the file
+     *
+     * @param uuid  the uuid
+     * @param items the items
+     */
+    private static void merge(@Nonnull UUID uuid, @Nonnull Collection<ItemStack> items) {
+        BValidate.notNull(uuid);
+        BValidate.notNull(items);
+
+        List<ItemStack> merged = new ArrayList<>(claims.getOrDefault(uuid, Collections.emptyList()));
+        merged.addAll(items);
+        claims.put(uuid, BItemStack.merge(merged));
+        set(uuid);
+    }
+
+    /**
+     * Holds the prizes of an open until they are delivered
+     *
+     * @param uuid  the uuid
+     * @param items the items
+     */
+    public static void hold(@Nonnull UUID uuid, @Nonnull List<ItemStack> items) {
+        BValidate.notNull(uuid);
+        BValidate.notNull(items);
+
+        //Copies the items, the inventory shrinks the stacks it only partly adds
+        held.merge(uuid, items.stream().map(ItemStack::clone).toList(), (current, added) -> {
+            List<ItemStack> merged = new ArrayList<>(current);
+            merged.addAll(added);
+            return merged;
+        });
+        saveHeld(uuid);
+    }
+
+    /**
+     * Delivers the held prizes of a player, those which do not fit or whose player left are kept in the claims
+     *
+     * @param player the player
+     */
+    public static void release(@Nonnull Player player) {
+        BValidate.notNull(player);
+
+        List<ItemStack> items = held.remove(player.getUniqueId());
+
+        //If there is nothing held, no need to continue
+        if (items == null) {
+            return;
+        }
+
+        setHeld(player.getUniqueId());
+        Collection<ItemStack> left = player.isOnline() ? player.getInventory().addItem(items.toArray(ItemStack[]::new)).values() : items;
+        if (!left.isEmpty()) {
+            merge(player.getUniqueId(), left);
+        }
+
+        //Writes the released and the kept prizes at once
+        configuration.save();
+    }
+
+    /**
+     * Gives one claimable item to the player, keeping what does not fit
+     *
+     * @param player   the player
+     * @param index    the index of the item
+     * @param expected the item expected at the index
+     * @return the number of given items
+     */
+    public static long claim(@Nonnull Player player, int index, @Nonnull ItemStack expected) {
+        BValidate.notNull(player);
+        BValidate.notNull(expected);
+
+        List<ItemStack> items = claims.get(player.getUniqueId());
+
+        //If the item is no longer claimable, no need to continue
+        if (items == null || index < 0 || index >= items.size() || !items.get(index).equals(expected)) {
+            return 0;
+        }
+
+        List<ItemStack> remaining = new ArrayList<>(items);
+        ItemStack item = remaining.remove(index);
+        Collection<ItemStack> left = player.getInventory().addItem(item.clone()).values();
+        remaining.addAll(index, left);
+
+        if (remaining.isEmpty()) {
+            claims.remove(player.getUniqueId());
+        } else {
+            claims.put(player.getUniqueId(), remaining);
+        }
+        save(player.getUniqueId());
+
+        return item.getAmount() - BItemStack.count(left);
+    }
+
+    /**
+     * Gives the claimable items to the player, keeping those which do not fit
+     *
+     * @param player the player
+     * @return the number of given items
+     */
+    public static long claim(@Nonnull Player player) {
+        BValidate.notNull(player);
+
+        List<ItemStack> items = claims.remove(player.getUniqueId());
+
+        //If there is nothing to claim, no need to continue
+        if (items == null) {
+            return 0;
+        }
+
+        Collection<ItemStack> remaining = player.getInventory().addItem(items.toArray(ItemStack[]::new)).values();
+        if (!remaining.isEmpty()) {
+            claims.put(player.getUniqueId(), new ArrayList<>(remaining));
+        }
+        save(player.getUniqueId());
+
+        return BItemStack.count(items) - BItemStack.count(remaining);
+    }
+
+    /**
+     * Opens the claim menu
+     *
+     * @param player the player
+     */
+    public static void openMenu(@Nonnull Player player) {
+        BValidate.notNull(player);
+
+        new ClaimMenu(player).openInventory(player);
+    }
+
+    /**
+     * Loads all claims
+     * The prizes still held come from opens interrupted by a stop or a crash, they become claimable.
+     */
+    public static void load() {
+        configuration.getKeys().stream()
+                .filter(key -> !key.equals(HELD))
+                .forEach(uuid -> claims.put(UUID.fromString(uuid), configuration.getItemStackList(uuid)));
+
+        Set<String> interrupted = configuration.getConfigurationSection(HELD);
+        if (!interrupted.isEmpty()) {
+            interrupted.forEach(uuid -> {
+                List<ItemStack> merged = new ArrayList<>(claims.getOrDefault(UUID.fromString(uuid), Collections.emptyList()));
+                merged.addAll(configuration.getItemStackList(HELD + "." + uuid));
+                claims.put(UUID.fromString(uuid), BItemStack.merge(merged));
+            });
+            save();
+        }
+    }
+
+    /**
+     * Saves the held prizes of a player
+     *
+     * @param uuid the uuid
+     */
+    private static void saveHeld(@Nonnull UUID uuid) {
+        setHeld(uuid);
+        configuration.save();
+    }
+
+    /**
+     * Sets the held prizes of a player in the setting, without saving the file
+     *
+     * @param uuid the uuid
+     */
+    private static void setHeld(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+
+        Optional.ofNullable(held.get(uuid)).ifPresentOrElse(
+                items -> configuration.set(HELD + "." + uuid, items),
+                () -> configuration.unset(HELD + "." + uuid));
+    }
+
+    /**
+     * Saves the claims of a player
+     *
+     * @param uuid the uuid
+     */
+    private static void save(@Nonnull UUID uuid) {
+        set(uuid);
+        configuration.save();
+    }
+
+    /**
+     * Sets the claims of a player in the setting, without saving the file
+     *
+     * @param uuid the uuid
+     */
+    private static void set(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+
+        Optional.ofNullable(claims.get(uuid)).ifPresentOrElse(
+                items -> configuration.set(uuid.toString(), items),
+                () -> configuration.unset(uuid.toString()));
+    }
+
+    /**
+     * Saves all claims
+     */
+    public static void save() {
+        configuration.clear();
+
+        //Saves all claims and held prizes
+        claims.forEach((uuid, items) -> configuration.set(uuid.toString(), items));
+        held.forEach((uuid, items) -> configuration.set(HELD + "." + uuid, items));
+
+        configuration.save();
+    }
+
+}
@@ -0,0 +1,79 @@
+package fr.bobinho.bcrate.util.claim.listener;
+
+import fr.bobinho.bcrate.api.event.BEvent;
+import fr.bobinho.bcrate.api.notification.BPlaceHolder;
+import fr.bobinho.bcrate.api.scheduler.BScheduler;
+import fr.bobinho.bcrate.util.claim.ClaimManager;
+import fr.bobinho.bcrate.util.claim.notification.ClaimNotification;
+import fr.bobinho.bcrate.util.claim.ux.ClaimMenu;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryType;
+
+/**
+ * Listener class for claims
+ */
+public class ClaimListener {
+
+    /**
+     * Registers claim listeners
+     */
+    public static void registerEvents() {
+        onInteractWithClaimMenu();
+        onClaim();
+    }
+
+    /**
+     * Listens interaction with the claim menu
+     */
+    private static void onInteractWithClaimMenu() {
+        BEvent.registerEvent(InventoryDragEvent.class)
+                .filter(event -> event.getInventory().getHolder() instanceof ClaimMenu)
+                .consume(event -> event.setCancelled(true));
+
+        BEvent.registerEvent(InventoryClickEvent.class)
+                .filter(event -> event.getInventory().getHolder() instanceof ClaimMenu)
+                .consume(event -> event.setCancelled(true));
+    }
+
+    /**
+     * Listens claim
+     */
+    private static void onClaim() {
+        BEvent.registerEvent(InventoryClickEvent.class)
+                .filter(event -> event.getInventory().getHolder() instanceof ClaimMenu)
+                .filter(event -> event.getClickedInventory() != null)
+                .filter(event -> event.getClickedInventory().getType() != InventoryType.PLAYER)
+                .filter(event -> event.getCurrentItem() != null)
+                .consume(event -> {
+                    Player player = (Player) event.getWhoClicked();
+                    ClaimMenu menu = (ClaimMenu) event.getInventory().getHolder();
+
+                    //Changes the page
+                    if (event.getSlot() == ClaimMenu.PREVIOUS_SLOT || event.getSlot() == ClaimMenu.NEXT_SLOT) {
+                        menu.page().set(menu.page().get() + (event.getSlot() == ClaimMenu.NEXT_SLOT ? 1 : -1));
+                        BScheduler.syncScheduler().run(() -> menu.openInventory(player));
+                        return;
+                    }
+
+                    //Claims all items or the clicked one
+                    long claimed = event.getSlot() == ClaimMenu.CLAIM_ALL_SLOT ? ClaimManager.claim(player)
+                            : ClaimManager.claim(player, menu.page().get() * ClaimMenu.PAGE_SIZE + event.getSlot(), event.getCurrentItem());
+
+                    //Messages
+                    if (claimed > 0) {
+                        player.sendMessage(ClaimNotification.CLAIM_RECEIVED.getNotification(new BPlaceHolder("%amount%", String.valueOf(claimed))));
+                    } else if (ClaimManager.count(player.getUniqueId()) == 0) {
+                        player.sendMessage(ClaimNotification.CLAIM_EMPTY.getNotification());
+                    } else {
+                        player.sendMessage(ClaimNotification.CLAIM_INVENTORY_FULL.getNotification(
+                                new BPlaceHolder("%amount%", String.valueOf(ClaimManager.count(player.getUniqueId())))));
+                    }
+
+                    //Refreshes the menu once the click is handled
+                    BScheduler.syncScheduler().run(() -> menu.openInventory(player));
+                });
+    }
+
+}
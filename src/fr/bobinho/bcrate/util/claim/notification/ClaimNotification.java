@@ -0,0 +1,63 @@
+package fr.bobinho.bcrate.util.claim.notification;
+
+import fr.bobinho.bcrate.BCrateCore;
+import fr.bobinho.bcrate.api.color.BColor;
+import fr.bobinho.bcrate.api.notification.BNotification;
+import fr.bobinho.bcrate.api.notification.BPlaceHolder;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Enum of claim notifications
+ */
+public enum ClaimNotification implements BNotification {
+    CLAIM_OVERFLOW,
+    CLAIM_PENDING,
+    CLAIM_RECEIVED,
+    CLAIM_EMPTY,
+    CLAIM_INVENTORY_FULL,
+    CLAIM_MENU_NAME,
+    CLAIM_MENU_PREVIOUS,
+    CLAIM_MENU_NEXT,
+    CLAIM_MENU_CLAIM_ALL;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNotification() {
+        return BColor.color(BCrateCore.getLangSetting().getString(name()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public @Nonnull String getNotification(@Nonnull BPlaceHolder... placeholders) {
+        String notification = BCrateCore.getLangSetting().getString(name());
+
+        for (BPlaceHolder placeHolder : placeholders) {
+            notification = notification.replaceAll(placeHolder.getOldValue(), placeHolder.getReplacement());
+        }
+
+        return BColor.color(notification);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public @Nonnull List<String> getNotifications(@Nonnull BPlaceHolder... placeholders) {
+        List<String> notifications = BCrateCore.getLangSetting().getStringList(name()).stream().toList();
+
+        return notifications.stream().map(notification -> {
+            for (BPlaceHolder placeHolder : placeholders) {
+                notification = notification.replaceAll(placeHolder.getOldValue(), placeHolder.getReplacement());
+            }
+
+            return BColor.color(notification);
+        }).toList();
+    }
+
+}
@@ -0,0 +1,99 @@
+package fr.bobinho.bcrate.util.claim.ux;
+
+import fr.bobinho.bcrate.api.item.BItemBuilder;
+import fr.bobinho.bcrate.api.menu.BMenu;
+import fr.bobinho.bcrate.api.notification.BPlaceHolder;
+import fr.bobinho.bcrate.api.validate.BValidate;
+import fr.bobinho.bcrate.util.claim.ClaimManager;
+import fr.bobinho.bcrate.util.claim.notification.ClaimNotification;
+import fr.bobinho.bcrate.wrapper.MonoValuedAttribute;
+import fr.bobinho.bcrate.wrapper.ReadOnlyMonoValuedAttribute;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Class representing the claim menu, listing the claimable items of a player by page
+ */
+public class ClaimMenu extends BMenu {
+
+    /**
+     * Fields
+     */
+    public static final int PAGE_SIZE = 45;
+    public static final int PREVIOUS_SLOT = 45;
+    public static final int CLAIM_ALL_SLOT = 49;
+    public static final int NEXT_SLOT = 53;
+    private final ReadOnlyMonoValuedAttribute<Player> owner;
+    private final MonoValuedAttribute<Integer> page;
+
+    /**
+     * Creates a new claim menu
+     *
+     * @param owner the owner
+     */
+    public ClaimMenu(@Nonnull Player owner) {
+        super(54, ClaimNotification.CLAIM_MENU_NAME.getNotification());
+
+        BValidate.notNull(owner);
+
+        this.owner = new ReadOnlyMonoValuedAttribute<>(owner);
+        this.page = new MonoValuedAttribute<>(0);
+    }
+
+    /**
+     * Gets the owner wrapper
+     *
+     * @return the owner wrapper
+     */
+    public @Nonnull ReadOnlyMonoValuedAttribute<Player> owner() {
+        return owner;
+    }
+
+    /**
+     * Gets the page wrapper
+     *
+     * @return the page wrapper
+     */
+    public @Nonnull MonoValuedAttribute<Integer> page() {
+        return page;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void openInventory(@Nonnull Player player) {
+        BValidate.notNull(player);
+
+        getInventory().clear();
+
+        List<ItemStack> items = ClaimManager.get(owner.get().getUniqueId());
+        int pages = Math.max(1, (int) Math.ceil(items.size() / (double) PAGE_SIZE));
+
+        //Keeps the page in bounds, the claims may have changed since the last opening
+        page.set(Math.min(page.get(), pages - 1));
+
+        for (int i = 0; i < PAGE_SIZE && page.get() * PAGE_SIZE + i < items.size(); i++) {
+            setItem(i, items.get(page.get() * PAGE_SIZE + i));
+        }
+
+        if (page.get() > 0) {
+            setItem(PREVIOUS_SLOT, new BItemBuilder(Material.ARROW).name(ClaimNotification.CLAIM_MENU_PREVIOUS.getNotification()).build());
+        }
+        setItem(CLAIM_ALL_SLOT, new BItemBuilder(Material.CHEST)
+                .name(ClaimNotification.CLAIM_MENU_CLAIM_ALL.getNotification(
+                        new BPlaceHolder("%page%", String.valueOf(page.get() + 1)),
+                        new BPlaceHolder("%pages%", String.valueOf(pages))))
+                .build());
+        if (page.get() < pages - 1) {
+            setItem(NEXT_SLOT, new BItemBuilder(Material.ARROW).name(ClaimNotification.CLAIM_MENU_NEXT.getNotification()).build());
+        }
+
+        player.openInventory(getInventory());
+    }
+
+}
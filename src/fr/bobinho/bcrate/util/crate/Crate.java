@@ -4,6 +4,7 @@ import fr.bobinho.bcrate.api.entity.BEntity;
 import fr.bobinho.bcrate.api.entity.base.BArmorStandEntity;
 import fr.bobinho.bcrate.api.entity.type.BArmoredEntity;
 import fr.bobinho.bcrate.api.metadata.BMetadata;
+import fr.bobinho.bcrate.api.renderer.BRendererGroup;
 import fr.bobinho.bcrate.api.scheduler.BScheduler;
 import fr.bobinho.bcrate.api.validate.BValidate;
 import fr.bobinho.bcrate.util.crate.edit.color.Color;
@@ -15,10 +16,11 @@ import fr.bobinho.bcrate.util.crate.ux.CrateStructureMenu;
 import fr.bobinho.bcrate.util.key.Key;
 import fr.bobinho.bcrate.util.player.PlayerManager;
 import fr.bobinho.bcrate.util.prize.Prize;
+import fr.bobinho.bcrate.util.prize.PrizeSampler;
 import fr.bobinho.bcrate.wrapper.MonoValuedAttribute;
 import fr.bobinho.bcrate.wrapper.MultiValuedAttribute;
 import fr.bobinho.bcrate.wrapper.ReadOnlyMonoValuedAttribute;
-import fr.bobinho.bcrate.wrapper.UpperBoundedMultiValuedAttribute;
+import fr.bobinho.bcrate.wrapper.SlotIndexedMultiValuedAttribute;
 import org.bukkit.Location;
 import org.bukkit.Sound;
 import org.bukkit.entity.Player;
@@ -38,19 +40,24 @@ public abstract class Crate {
      */
     private final MonoValuedAttribute<String> name;
     private final MonoValuedAttribute<Size> size;
-    private final UpperBoundedMultiValuedAttribute<Prize> prizes;
+    private final SlotIndexedMultiValuedAttribute<Prize> prizes;
     private final ReadOnlyMonoValuedAttribute<Location> location;
     private final MonoValuedAttribute<Color> color;
     private final MonoValuedAttribute<Key> key;
     private final MultiValuedAttribute<ItemStack> skin;
+    private final MonoValuedAttribute<Integer> rewards;
+    private final MonoValuedAttribute<Boolean> distinct;
+    private final MonoValuedAttribute<Integer> pity;
     private final ReadOnlyMonoValuedAttribute<String> direction;
     private final ReadOnlyMonoValuedAttribute<CrateEditMenu> editMenu;
     private final ReadOnlyMonoValuedAttribute<CratePrizeMenu> prizeMenu;
     private final ReadOnlyMonoValuedAttribute<CrateShowMenu> showMenu;
     private final ReadOnlyMonoValuedAttribute<CrateStructureMenu> structureMenu;
     private final MultiValuedAttribute<BArmorStandEntity> structure;
+    private final ReadOnlyMonoValuedAttribute<BRendererGroup> renderer;
     private final BScheduler animation;
     private final BMetadata metadata;
+    private volatile PrizeSampler sampler;
 
     /**
      * Creates a new crate
@@ -72,13 +79,18 @@ public abstract class Crate {
 
         this.name = new MonoValuedAttribute<>(name);
         this.size = new MonoValuedAttribute<>(size);
-        this.prizes = new UpperBoundedMultiValuedAttribute<>(size.getDimension(), prizes);
+        this.prizes = new SlotIndexedMultiValuedAttribute<>(size.getDimension(), prize -> prize.slot().get(), prizes);
         this.location = new ReadOnlyMonoValuedAttribute<>(location);
         this.color = new MonoValuedAttribute<>(color);
         this.key = new MonoValuedAttribute<>(key);
         this.skin = new MultiValuedAttribute<>(skin);
+        this.rewards = new MonoValuedAttribute<>(2);
+        this.distinct = new MonoValuedAttribute<>(false);
+        this.pity = new MonoValuedAttribute<>(0);
         this.direction = new ReadOnlyMonoValuedAttribute<>(direction);
         this.structure = new MultiValuedAttribute<>(structure);
+        this.renderer = new ReadOnlyMonoValuedAttribute<>(new BRendererGroup(location));
+        structure.forEach(entity -> renderer.get().add(entity.getRenderer()));
         this.editMenu = new ReadOnlyMonoValuedAttribute<>(new CrateEditMenu(this));
         this.prizeMenu = new ReadOnlyMonoValuedAttribute<>(new CratePrizeMenu(this));
         this.showMenu = new ReadOnlyMonoValuedAttribute<>(new CrateShowMenu(this));
@@ -122,7 +134,7 @@ public abstract class Crate {
      *
      * @return the prizes wrapper
      */
-    public @Nonnull UpperBoundedMultiValuedAttribute<Prize> prizes() {
+    public @Nonnull SlotIndexedMultiValuedAttribute<Prize> prizes() {
         return prizes;
     }
 
@@ -162,6 +174,33 @@ public abstract class Crate {
         return skin;
     }
 
+    /**
+     * Gets the reward count wrapper, the number of prizes won by open
+     *
+     * @return the reward count wrapper
+     */
+    public @Nonnull MonoValuedAttribute<Integer> rewards() {
+        return rewards;
+    }
+
+    /**
+     * Gets the distinct wrapper, true if a prize can only be won once by open
+     *
+     * @return the distinct wrapper
+     */
+    public @Nonnull MonoValuedAttribute<Boolean> distinct() {
+        return distinct;
+    }
+
+    /**
+     * Gets the pity wrapper, the number of opens without rare prize before one is forced (0 to disable)
+     *
+     * @return the pity wrapper
+     */
+    public @Nonnull MonoValuedAttribute<Integer> pity() {
+        return pity;
+    }
+
     public @Nonnull ReadOnlyMonoValuedAttribute<String> direction() {
         return direction;
     }
@@ -211,6 +250,15 @@ public abstract class Crate {
         return structure;
     }
 
+    /**
+     * Gets the renderer wrapper, the group deciding who sees the structure
+     *
+     * @return the renderer wrapper
+     */
+    public @Nonnull ReadOnlyMonoValuedAttribute<BRendererGroup> renderer() {
+        return renderer;
+    }
+
     /**
      * Gets the metadata wrapper
      *
@@ -220,6 +268,29 @@ public abstract class Crate {
         return metadata;
     }
 
+    /**
+     * Gets the compiled prize table, compiling it if the prizes changed since the last draw
+     *
+     * @return the compiled prize table
+     */
+    public @Nonnull PrizeSampler sampler() {
+        PrizeSampler current = sampler;
+
+        if (current == null) {
+            current = new PrizeSampler(prizes.get());
+            sampler = current;
+        }
+
+        return current;
+    }
+
+    /**
+     * Invalidates the compiled prize table, after a prize or a chance changed
+     */
+    public void invalidateSampler() {
+        sampler = null;
+    }
+
     /**
      * Gets the animation wrapper
      *
@@ -0,0 +1,48 @@
+package fr.bobinho.bcrate.util.crate;
+
+import fr.bobinho.bcrate.api.validate.BValidate;
+import fr.bobinho.bcrate.util.crate.edit.color.Color;
+import fr.bobinho.bcrate.util.crate.edit.size.Size;
+import fr.bobinho.bcrate.util.prize.PrizeDefinition;
+import org.bukkit.inventory.ItemStack;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Record representing a parsed crate, not yet built
+ * The key and the location are kept as strings, they are resolved when the crate is built.
+ *
+ * @param name      the name
+ * @param size      the size
+ * @param location  the location
+ * @param color     the color
+ * @param key       the key name
+ * @param skin      the skin
+ * @param direction the direction
+ * @param rewards   the number of prizes won by open
+ * @param distinct  true if a prize can only be won once by open
+ * @param pity      the number of opens without rare prize before one is forced, 0 to disable
+ * @param prizes    the prizes
+ */
+public record CrateDefinition(@Nonnull String name, @Nonnull Size size, @Nonnull String location, @Nonnull Color color,
+                              @Nonnull String key, @Nonnull List<ItemStack> skin, @Nonnull String direction,
+                              int rewards, boolean distinct, int pity, @Nonnull List<PrizeDefinition> prizes) {
+
+    /**
+     * Creates a new crate definition
+     */
+    public CrateDefinition {
+        BValidate.notNull(name);
+        BValidate.notNull(size);
+        BValidate.notNull(location);
+        BValidate.notNull(color);
+        BValidate.notNull(key);
+        BValidate.notNull(skin);
+        BValidate.notNull(direction);
+        BValidate.notNull(prizes);
+        BValidate.isTrue(rewards > 0);
+        BValidate.isTrue(pity >= 0);
+    }
+
+}
@@ -4,10 +4,15 @@ import fr.bobinho.bcrate.BCrateCore;
 import fr.bobinho.bcrate.api.entity.BEntity;
 import fr.bobinho.bcrate.api.entity.base.BArmorStandEntity;
 import fr.bobinho.bcrate.api.entity.type.BArmoredEntity;
+import fr.bobinho.bcrate.api.item.BItemStack;
 import fr.bobinho.bcrate.api.location.BLocation;
+import fr.bobinho.bcrate.api.random.BRandom;
+import fr.bobinho.bcrate.api.scheduler.BScheduler;
 import fr.bobinho.bcrate.api.setting.BSetting;
 import fr.bobinho.bcrate.api.stream.IndexedStream;
 import fr.bobinho.bcrate.api.validate.BValidate;
+import fr.bobinho.bcrate.util.claim.ClaimManager;
+import fr.bobinho.bcrate.util.crate.audit.CrateAudit;
 import fr.bobinho.bcrate.util.crate.edit.color.Color;
 import fr.bobinho.bcrate.util.crate.edit.size.Size;
 import fr.bobinho.bcrate.util.crate.listener.CrateListener;
@@ -15,8 +20,13 @@ import fr.bobinho.bcrate.util.crate.type.CrateEW;
 import fr.bobinho.bcrate.util.crate.type.CrateNS;
 import fr.bobinho.bcrate.util.key.Key;
 import fr.bobinho.bcrate.util.key.KeyManager;
+import fr.bobinho.bcrate.util.player.PlayerManager;
 import fr.bobinho.bcrate.util.prize.Prize;
+import fr.bobinho.bcrate.util.prize.PrizeDefinition;
 import fr.bobinho.bcrate.util.prize.PrizeManager;
+import fr.bobinho.bcrate.util.prize.PrizeSampler;
+import fr.bobinho.bcrate.util.prize.stock.StockManager;
+import fr.bobinho.bcrate.util.prize.stock.StockPool;
 import fr.bobinho.bcrate.util.tag.Tag;
 import fr.bobinho.bcrate.util.tag.TagManager;
 import org.bukkit.Location;
@@ -29,7 +39,6 @@ import javax.annotation.Nonnull;
 import java.awt.geom.IllegalPathStateException;
 import java.awt.geom.Point2D;
 import java.util.*;
-import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -44,13 +53,26 @@ public class CrateManager {
      * Fields
      */
     private static final HashMap<String, Crate> crates = new HashMap<>();
+    private static final Map<String, CrateDefinition> relocations = new HashMap<>();
     private static final BSetting configuration = BCrateCore.getCrateSetting();
+    private static final int REDRAWS = 64;
 
     /**
      * Registers the crate manager
      */
     public static void register() {
-        load();
+        register(parse(configuration));
+    }
+
+    /**
+     * Registers the crate manager with already parsed crates
+     *
+     * @param parsed the parsed crates
+     */
+    public static void register(@Nonnull List<CrateDefinition> parsed) {
+        BValidate.notNull(parsed);
+
+        build(parsed);
         CrateListener.registerEvents();
     }
 
@@ -167,18 +189,27 @@ public class CrateManager {
         BValidate.notNull(name);
         BValidate.notNull(size);
 
-        get(name).ifPresent(crate -> {
-            crate.size().set(size);
-            crate.prizes().removeAll(crate.prizes().stream()
-                    .filter(prize -> prize.slot().get() >= size.getDimension())
-                    .toList());
-            crate.prizes().resize(size.getDimension());
-            crate.prizeMenu().get().resize(size.getDimension());
-            crate.showMenu().get().resize(size.getDimension());
-        });
+        get(name).ifPresent(crate -> resize(crate, size));
         save();
     }
 
+    /**
+     * Resize a crate, without saving it
+     *
+     * @param crate the crate
+     * @param size  the size
+     */
+    private static void resize(@Nonnull Crate crate, @Nonnull Size size) {
+        BValidate.notNull(crate);
+        BValidate.notNull(size);
+
+        crate.size().set(size);
+        crate.prizes().resize(size.getDimension());
+        crate.prizeMenu().get().resize(size.getDimension());
+        crate.showMenu().get().resize(size.getDimension());
+        crate.invalidateSampler();
+    }
+
     /**
      * Changes the color of the crate
      *
@@ -207,6 +238,38 @@ public class CrateManager {
         save();
     }
 
+    /**
+     * Changes the rewards of the crate
+     *
+     * @param name     the name
+     * @param rewards  the number of prizes won by open
+     * @param distinct true if a prize can only be won once by open
+     */
+    public static void changeRewards(@Nonnull String name, int rewards, boolean distinct) {
+        BValidate.notNull(name);
+        BValidate.isTrue(rewards > 0);
+
+        get(name).ifPresent(crate -> {
+            crate.rewards().set(rewards);
+            crate.distinct().set(distinct);
+        });
+        save();
+    }
+
+    /**
+     * Changes the pity of the crate
+     *
+     * @param name the name
+     * @param pity the number of opens without rare prize before one is forced, 0 to disable
+     */
+    public static void changePity(@Nonnull String name, int pity) {
+        BValidate.notNull(name);
+        BValidate.isTrue(pity >= 0);
+
+        get(name).ifPresent(crate -> crate.pity().set(pity));
+        save();
+    }
+
     /**
      * Changes the skin of the crate
      *
@@ -240,6 +303,7 @@ public class CrateManager {
         BValidate.notNull(crate);
 
         crate.prizes().add(new Prize(item, item, slot, item.getType() == Material.BARRIER ? 0 : 50));
+        crate.invalidateSampler();
         save();
     }
 
@@ -252,7 +316,8 @@ public class CrateManager {
     public static void removePrize(@Nonnull Crate crate, int slot) {
         BValidate.notNull(crate);
 
-        PrizeManager.get(crate, slot).ifPresent(prize -> crate.prizes().remove(prize));
+        crate.prizes().remove(slot);
+        crate.invalidateSampler();
         save();
     }
 
@@ -378,78 +443,670 @@ public class CrateManager {
     /**
      * Plays with the crate
      *
-     * @param name the name
+     * @param player the player
+     * @param name   the name
      * @return the rewards
      */
-    public static @Nonnull List<Prize> play(@Nonnull String name) {
+    public static @Nonnull List<Prize> play(@Nonnull Player player, @Nonnull String name) {
+        BValidate.notNull(player);
         BValidate.notNull(name);
 
-        Random random = new Random();
+        return get(name).map(crate -> {
+            PrizeSampler sampler = crate.sampler();
+
+            //If there is no prize, no need to continue
+            if (sampler.isEmpty()) {
+                return Collections.<Prize>emptyList();
+            }
+
+            return Arrays.stream(roll(player.getUniqueId(), crate, sampler, 1)).filter(index -> index >= 0).mapToObj(sampler::get).toList();
+        }).orElse(Collections.emptyList());
+    }
+
+    /**
+     * Gets the number of prizes won by open
+     * Distinct prizes are limited by the number of prizes which are not exhausted.
+     *
+     * @param crate   the crate
+     * @param sampler the compiled prize table
+     * @return the number of prizes won by open
+     */
+    private static int getRewards(@Nonnull Crate crate, @Nonnull PrizeSampler sampler) {
+        return crate.distinct().get() ? Math.min(crate.rewards().get(), sampler.getAvailable()) : crate.rewards().get();
+    }
 
-        return get(name).map(crate -> IntStream.range(0, 2).mapToObj(i -> {
-            double picked = random.nextDouble() * (1.0D + crate.prizes().stream()
-                    .mapToDouble(prize -> prize.chance().get())
-                    .sum());
+    /**
+     * Rolls the prize indexes of several opens
+     * When the opens are audited, the draws come from a new seed recorded with the drawn slots, otherwise from the stream of the thread.
+     * The pity counter of the player is read before the opens and updated after them.
+     * The stock of the rolled prizes is taken once rolled, a prize whose stock is exhausted is drawn again
+     * or dropped if no prize remains.
+     *
+     * @param player  the player
+     * @param crate   the crate
+     * @param sampler the compiled prize table
+     * @param opens   the number of opens
+     * @return the rolled prize indexes, open after open, -1 for the dropped prizes
+     */
+    private static @Nonnull int[] roll(@Nonnull UUID player, @Nonnull Crate crate, @Nonnull PrizeSampler sampler, int opens) {
+        BValidate.notNull(player);
+        BValidate.notNull(crate);
+        BValidate.notNull(sampler);
+
+        int rewards = getRewards(crate, sampler);
+        boolean distinct = crate.distinct().get();
+        int threshold = sampler.hasRare() ? crate.pity().get() : 0;
+        int pity = threshold > 0 ? PlayerManager.getPity(player, crate) : 0;
+
+        int[] rolled;
+        boolean[] forced = new boolean[opens];
+        List<Integer> failed = new ArrayList<>();
+        List<Integer> emptied = new ArrayList<>();
+        if (!CrateAudit.isEnabled()) {
+            rolled = roll(sampler, opens, rewards, distinct, threshold, pity, forced, BRandom.current(), 0);
+            takeStock(sampler, rolled, rewards, distinct, forced, BRandom.current(), 0, failed, emptied, false);
+        } else {
+            long seed = BRandom.nextSeed();
+            long fingerprint = sampler.getFingerprint();
+            rolled = roll(sampler, opens, rewards, distinct, threshold, pity, forced, null, seed);
+            int redraws = takeStock(sampler, rolled, rewards, distinct, forced, null, seed, failed, emptied, false);
+
+            CrateAudit.record(new CrateAudit.Entry(seed, System.currentTimeMillis(), player, crate.name().get(), fingerprint, opens, rewards, distinct,
+                    threshold, pity, redraws, failed, emptied, countSlots(sampler, rolled)));
+        }
+
+        //Updates the pity counter from the rolled opens
+        if (threshold > 0) {
+            for (int open = 0; open < opens; open++) {
+                pity = isRare(sampler, rolled, open * rewards, rewards) ? 0 : pity + 1;
+            }
+            PlayerManager.setPity(player, crate, pity);
+        }
 
-            return crate.prizes().stream().filter(new Predicate<>() {
-                double sum = 0;
+        return rolled;
+    }
 
-                @Override
-                public boolean test(Prize prize) {
-                    sum = sum + prize.chance().get();
-                    return sum >= picked;
+    /**
+     * Takes the stock of the rolled prizes
+     * A prize whose stock is exhausted is removed from the prize table and replaced by a new draw,
+     * distinct from the other prizes of its open if needed, or by -1 if no prize can be drawn.
+     * A forced rare prize is replaced by another rare prize while there is one.
+     * The seeded draws go on after the rolled ones, so the redraws come from the same audited stream.
+     * The takes which exhausted a prize are numbered and recorded, a replay reads them back instead of taking the stock.
+     *
+     * @param sampler  the compiled prize table
+     * @param rolled   the rolled prize indexes
+     * @param rewards  the number of prizes won by open
+     * @param distinct true if a prize can only be won once by open
+     * @param forced   the opens whose first prize was forced to be rare
+     * @param random   the random stream, null to use the seeded draws
+     * @param seed     the seed, if there is no random stream
+     * @param failed   the numbers of the takes which failed
+     * @param emptied  the numbers of the takes which took the last stock of their prize
+     * @param replayed true to read the takes, false to take the stock and record them
+     * @return the number of redraws
+     */
+    private static int takeStock(@Nonnull PrizeSampler sampler, @Nonnull int[] rolled, int rewards, boolean distinct, @Nonnull boolean[] forced, SplittableRandom random, long seed,
+                                 @Nonnull List<Integer> failed, @Nonnull List<Integer> emptied, boolean replayed) {
+        long draw = rolled.length;
+        int take = 0;
+
+        for (int i = 0; i < rolled.length; i++) {
+
+            //Each failed take exhausts one more prize, so the draws end
+            while (rolled[i] >= 0 && (replayed ? failed.contains(take) : !StockManager.take(sampler.get(rolled[i])))) {
+                if (!replayed) {
+                    failed.add(take);
+                }
+                take++;
+                sampler.exhaust(rolled[i]);
+
+                int offset = i - i % rewards;
+                int index = -1;
+                for (int attempt = 0; attempt < REDRAWS && !sampler.isEmpty(); attempt++) {
+                    double next = random != null ? random.nextDouble() : BRandom.nextDouble(seed, draw++);
+                    int redrawn = i == offset && forced[i / rewards] && sampler.hasRare() ? sampler.sampleRareIndex(next) : sampler.sampleIndex(next);
+
+                    if (!distinct || IntStream.range(offset, offset + rewards).noneMatch(j -> rolled[j] == redrawn)) {
+                        index = redrawn;
+                        break;
+                    }
+                }
+                rolled[i] = index;
+            }
+
+            //If no prize was taken, no need to continue
+            if (rolled[i] < 0) {
+                continue;
+            }
+
+            //Removes the prize as soon as its last stock is taken
+            if (replayed ? emptied.contains(take) : StockManager.get(sampler.get(rolled[i])).map(StockPool::isExhausted).orElse(false)) {
+                if (!replayed) {
+                    emptied.add(take);
+                }
+                sampler.exhaust(rolled[i]);
+            }
+            take++;
+        }
+
+        return (int) (draw - rolled.length);
+    }
+
+    /**
+     * Rolls the prize indexes of several opens
+     *
+     * @param sampler   the compiled prize table
+     * @param opens     the number of opens
+     * @param rewards   the number of prizes won by open
+     * @param distinct  true if a prize can only be won once by open
+     * @param threshold the number of opens without rare prize before one is forced, 0 to disable
+     * @param pity      the number of opens without rare prize before the first open
+     * @param forced    the array receiving the opens whose first prize was forced to be rare
+     * @param random    the random stream, null to use the seeded draws
+     * @param seed      the seed, if there is no random stream
+     * @return the rolled prize indexes, open after open
+     */
+    private static @Nonnull int[] roll(@Nonnull PrizeSampler sampler, int opens, int rewards, boolean distinct, int threshold, int pity, @Nonnull boolean[] forced, SplittableRandom random, long seed) {
+        int[] rolled = new int[opens * rewards];
+        double[] randoms = new double[rewards];
+        boolean enabled = threshold > 0 && sampler.hasRare();
+
+        for (int open = 0; open < opens; open++) {
+            for (int i = 0; i < rewards; i++) {
+                randoms[i] = random != null ? random.nextDouble() : BRandom.nextDouble(seed, (long) open * rewards + i);
+            }
+
+            //Forces the first prize of the open to be rare once the pity trips
+            forced[open] = enabled && pity >= threshold;
+
+            if (distinct) {
+                sampler.sampleDistinct(randoms, rolled, open * rewards, forced[open]);
+            } else {
+                for (int i = 0; i < rewards; i++) {
+                    rolled[open * rewards + i] = i == 0 && forced[open] ? sampler.sampleRareIndex(randoms[i]) : sampler.sampleIndex(randoms[i]);
                 }
+            }
 
-            }).findFirst().orElse(crate.prizes().get(random.nextInt(crate.prizes().size())));
+            if (enabled) {
+                pity = isRare(sampler, rolled, open * rewards, rewards) ? 0 : pity + 1;
+            }
+        }
 
-        }).toList()).orElse(Collections.emptyList());
+        return rolled;
+    }
+
+    /**
+     * Checks if an open rolled a rare prize
+     *
+     * @param sampler the compiled prize table
+     * @param rolled  the rolled prize indexes
+     * @param offset  the index of the first prize index of the open
+     * @param rewards the number of prizes won by open
+     * @return true if the open rolled a rare prize, false otherwise
+     */
+    private static boolean isRare(@Nonnull PrizeSampler sampler, @Nonnull int[] rolled, int offset, int rewards) {
+        for (int i = offset; i < offset + rewards; i++) {
+            if (rolled[i] >= 0 && sampler.isRare(rolled[i])) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Replays an audited open against the current prize table of its crate
+     * The recorded stock takes are replayed on a copy of the table, so the stock is never taken again.
+     *
+     * @param entry the audited open
+     * @return the number of draws of each slot, empty if the crate no longer exists
+     */
+    public static @Nonnull Optional<Map<Integer, Integer>> replay(@Nonnull CrateAudit.Entry entry) {
+        BValidate.notNull(entry);
+
+        return get(entry.crate()).map(crate -> {
+            PrizeSampler sampler = crate.sampler();
+
+            //If the open can not be drawn from the current table, no need to continue
+            if (sampler.isEmpty() || entry.distinct() && entry.rewards() > sampler.getAvailable()) {
+                return Collections.emptyMap();
+            }
+
+            PrizeSampler replayed = sampler.copy();
+            boolean[] forced = new boolean[entry.opens()];
+            int[] rolled = roll(replayed, entry.opens(), entry.rewards(), entry.distinct(), entry.threshold(), entry.pity(), forced, null, entry.seed());
+            takeStock(replayed, rolled, entry.rewards(), entry.distinct(), forced, null, entry.seed(), entry.failed(), entry.emptied(), true);
+
+            return countSlots(replayed, rolled);
+        });
+    }
+
+    /**
+     * Counts the draws of each slot
+     *
+     * @param sampler the compiled prize table
+     * @param rolled  the rolled prize indexes
+     * @return the number of draws of each slot
+     */
+    private static @Nonnull Map<Integer, Integer> countSlots(@Nonnull PrizeSampler sampler, @Nonnull int[] rolled) {
+        Map<Integer, Integer> slots = new TreeMap<>();
+
+        for (int index : rolled) {
+            if (index < 0) {
+                continue;
+            }
+
+            slots.merge(sampler.get(index).slot().get(), 1, Integer::sum);
+        }
+
+        return slots;
+    }
+
+    /**
+     * Opens several crates at once for a player, without animation
+     * The keys of the opens which gave a prize are debited in a single balance change, the similar prizes are merged and given in a single
+     * inventory operation, and those which do not fit are kept in the claims of the player.
+     *
+     * @param player the player
+     * @param crate  the crate
+     * @param count  the number of crates
+     * @return the number of times each prize was won
+     */
+    public static @Nonnull Map<Prize, Integer> open(@Nonnull Player player, @Nonnull Crate crate, int count) {
+        BValidate.notNull(player);
+        BValidate.notNull(crate);
+        BValidate.isTrue(count > 0);
+
+        PrizeSampler sampler = crate.sampler();
+
+        //If there is no prize to draw, no need to continue
+        if (sampler.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        int[] rolled = roll(player.getUniqueId(), crate, sampler, count);
+        int rewards = rolled.length / count;
+
+        //Counts by prize index, and the opens which gave at least one prize
+        int[] drawn = new int[sampler.size()];
+        int opened = 0;
+        for (int open = 0; open < count; open++) {
+            boolean won = false;
+            for (int i = open * rewards; i < (open + 1) * rewards; i++) {
+                if (rolled[i] >= 0) {
+                    drawn[rolled[i]]++;
+                    won = true;
+                }
+            }
+            opened += won ? 1 : 0;
+        }
+
+        //Only the opens which gave a prize cost a key, the others ran out of stock
+        if (opened > 0) {
+            PlayerManager.removeKey(player.getUniqueId(), crate.key().get(), opened);
+        }
+
+        Map<Prize, Integer> prizes = new LinkedHashMap<>();
+        for (int i = 0; i < drawn.length; i++) {
+            if (drawn[i] > 0) {
+                prizes.put(sampler.get(i), drawn[i]);
+            }
+        }
+
+        //Merges the won items into full stacks
+        List<ItemStack> items = new ArrayList<>();
+        prizes.forEach((prize, times) -> items.addAll(BItemStack.split(prize.item().get(), (long) times * prize.item().get().getAmount())));
+
+        ClaimManager.add(player.getUniqueId(), player.getInventory().addItem(BItemStack.merge(items).toArray(ItemStack[]::new)).values());
+
+        return prizes;
     }
 
     /**
      * Reloads all crates
+     * The file is parsed off the main thread, then only the changes are applied on the main thread.
+     * Structures are only recreated for the crates whose location or direction changed, once they are no longer opened.
+     *
+     * @param callback the task run on the main thread once reloaded
+     */
+    public static void reload(@Nonnull Runnable callback) {
+        BValidate.notNull(callback);
+
+        BScheduler.asyncScheduler().run(() -> {
+            BSetting read;
+            List<CrateDefinition> parsed;
+
+            try {
+                read = configuration.read();
+                parsed = parse(read);
+                validate(parsed);
+            } catch (Exception e) {
+                BCrateCore.getBLogger().error("Could not reload the crates, the current ones are kept!", e);
+                return;
+            }
+
+            BScheduler.syncScheduler().run(() -> {
+                configuration.apply(read);
+                apply(parsed);
+                callback.run();
+            });
+        });
+    }
+
+    /**
+     * Validates the locations and directions of parsed crates, so a reload fails before any crate is applied
+     * May be called from any thread.
+     *
+     * @param parsed the parsed crates
+     * @throws IllegalPathStateException if a crate has an invalid location or direction
      */
-    public static void reload() {
+    public static void validate(@Nonnull List<CrateDefinition> parsed) {
+        BValidate.notNull(parsed);
+
+        parsed.forEach(definition -> {
+            String[] location = definition.location().split(":");
+
+            try {
+                if (location.length != 6 || !definition.direction().matches("NS|EW")) {
+                    throw new IllegalArgumentException();
+                }
+                for (int i = 1; i < location.length; i++) {
+                    Double.parseDouble(location[i]);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalPathStateException("Invalid location or direction of the crate " + definition.name() + "!");
+            }
+        });
+    }
+
+    /**
+     * Applies the parsed crates to the registered ones
+     * The keys and tags are resolved for all crates first, so none is applied if one refers to an unknown key or tag.
+     * Must be called from the main thread.
+     *
+     * @param parsed the parsed crates
+     */
+    public static void apply(@Nonnull List<CrateDefinition> parsed) {
+        BValidate.notNull(parsed);
+
+        //If a crate can not be resolved, no need to continue
+        Optional<CrateDefinition> unresolved = parsed.stream()
+                .filter(definition -> KeyManager.get(definition.key()).isEmpty() || definition.prizes().stream()
+                        .flatMap(prize -> prize.tags().stream())
+                        .anyMatch(tag -> TagManager.get(tag).isEmpty()))
+                .findFirst();
+        if (unresolved.isPresent()) {
+            BCrateCore.getBLogger().error("Could not reload the crates, the crate " + unresolved.get().name() + " refers to an unknown key or tag. The current ones are kept!");
+            return;
+        }
+
+        Map<String, CrateDefinition> definitions = parsed.stream().collect(Collectors.toMap(CrateDefinition::name, definition -> definition));
+        int[] changes = new int[4];
+
+        //Removes the crates no longer defined
+        List.copyOf(crates.values()).stream()
+                .filter(crate -> !definitions.containsKey(crate.name().get()))
+                .forEach(crate -> {
+                    if (!isIdle(crate)) {
+                        BCrateCore.getBLogger().warn("The crate " + crate.name().get() + " is being opened, it will be deleted on the next reload.");
+                        return;
+                    }
+
+                    remove(crate);
+                    changes[0]++;
+                });
+
+        definitions.values().forEach(definition -> {
+            Crate crate = crates.get(definition.name());
+
+            //Creates the new crates
+            if (crate == null) {
+                crates.put(definition.name(), build(definition));
+                changes[1]++;
+                return;
+            }
+
+            //Recreates the moved crates, a crate being opened is updated now and moved once opened
+            if (!crate.location().get().equals(BLocation.getAsLocation(definition.location())) || !crate.direction().get().equals(definition.direction())) {
+                if (isIdle(crate)) {
+                    relocations.remove(definition.name());
+                    remove(crate);
+                    crates.put(definition.name(), build(definition));
+                } else {
+                    update(crate, definition);
+                    relocate(crate, definition);
+                }
+                changes[2]++;
+                return;
+            }
+
+            relocations.remove(definition.name());
+            update(crate, definition);
+            changes[3]++;
+        });
+
+        BCrateCore.getBLogger().info("Reloaded crates: " + changes[1] + " created, " + changes[2] + " moved, " + changes[3] + " updated, " + changes[0] + " deleted.");
+    }
+
+    /**
+     * Resolves the keys and tags of all crates again, after they were reloaded
+     * The keys no longer defined are kept, the tags no longer defined are removed from the prizes.
+     */
+    public static void relink() {
         crates.values().forEach(crate -> {
-            crate.structure().stream().forEach(BEntity::remove);
-            crate.animation().stop();
+            KeyManager.get(crate.key().get().name().get()).ifPresent(key -> crate.key().set(key));
+
+            crate.prizes().forEach(prize -> {
+                List<Tag> tags = prize.tags().stream()
+                        .map(tag -> TagManager.get(tag.name().get()))
+                        .flatMap(Optional::stream)
+                        .toList();
+
+                prize.tags().clear();
+                tags.forEach(tag -> prize.tags().add(tag));
+            });
         });
-        crates.clear();
-        configuration.initialize();
+    }
+
+    /**
+     * Checks if the crate is not being opened, so its structure can be removed
+     *
+     * @param crate the crate
+     * @return true if the crate is idle, false otherwise
+     */
+    private static boolean isIdle(@Nonnull Crate crate) {
+        BValidate.notNull(crate);
+
+        return !crate.metadata().has("open") && !crate.metadata().has("waitOpen");
+    }
+
+    /**
+     * Moves a crate being opened once its open ends
+     * Only the last reloaded location is kept, the move is dropped if the crate is removed or reloaded in place meanwhile.
+     *
+     * @param crate      the crate
+     * @param definition the parsed crate
+     */
+    private static void relocate(@Nonnull Crate crate, @Nonnull CrateDefinition definition) {
+        BValidate.notNull(crate);
+        BValidate.notNull(definition);
+
+        String name = crate.name().get();
+
+        //If the crate already waits to be moved, no need to continue, the new location is taken when it moves
+        if (relocations.put(name, definition) != null) {
+            return;
+        }
+
+        BCrateCore.getBLogger().info("The crate " + name + " is being opened, it will be moved once opened.");
+        BScheduler.syncScheduler().every(20).run(task -> {
+
+            //Checks if the crate is still being opened
+            if (crates.get(name) == crate && relocations.containsKey(name) && !isIdle(crate)) {
+                return;
+            }
+
+            task.cancel();
+            CrateDefinition relocated = relocations.remove(name);
 
-        load();
+            //If the crate was removed, replaced or reloaded in place meanwhile, no need to continue
+            if (crates.get(name) != crate || relocated == null) {
+                return;
+            }
+
+            remove(crate);
+            crates.put(name, build(relocated));
+        });
+    }
+
+    /**
+     * Removes a crate and its structure, without saving
+     *
+     * @param crate the crate
+     */
+    private static void remove(@Nonnull Crate crate) {
+        BValidate.notNull(crate);
+
+        crate.structure().stream().forEach(BEntity::remove);
+        crate.animation().stop();
+        crates.remove(crate.name().get());
+    }
+
+    /**
+     * Updates a crate from its parsed version, keeping its structure
+     *
+     * @param crate      the crate
+     * @param definition the parsed crate
+     */
+    private static void update(@Nonnull Crate crate, @Nonnull CrateDefinition definition) {
+        BValidate.notNull(crate);
+        BValidate.notNull(definition);
+
+        if (crate.size().get() != definition.size()) {
+            resize(crate, definition.size());
+        }
+        if (crate.color().get() != definition.color()) {
+            crate.color().set(definition.color());
+        }
+        crate.rewards().set(definition.rewards());
+        crate.distinct().set(definition.distinct());
+        crate.pity().set(definition.pity());
+
+        //Resolves the key again, it may have been reloaded
+        crate.key().set(KeyManager.get(definition.key()).orElseThrow(IllegalPathStateException::new));
+
+        //Updates the skin, the helmet being the only one shown by the structure
+        if (!crate.skin().get().equals(definition.skin())) {
+            boolean helmetChanged = crate.skin().size() == 0 || definition.skin().isEmpty() || !crate.skin().get(0).equals(definition.skin().get(0));
+
+            crate.skin().clear();
+            definition.skin().forEach(skin -> crate.skin().add(skin));
+
+            if (helmetChanged && !definition.skin().isEmpty()) {
+                crate.structure().get(0).setEquipment(BArmoredEntity.Equipment.HELMET, definition.skin().get(0)).render();
+            }
+        }
+
+        //Updates the prizes slot by slot
+        Map<Integer, PrizeDefinition> prizes = definition.prizes().stream().collect(Collectors.toMap(PrizeDefinition::slot, prize -> prize));
+        crate.prizes().removeAll(crate.prizes().stream().filter(prize -> !prizes.containsKey(prize.slot().get())).toList());
+        prizes.values().forEach(prize -> crate.prizes().get(prize.slot()).ifPresentOrElse(
+                current -> PrizeManager.update(current, prize),
+                () -> crate.prizes().add(PrizeManager.build(prize))));
+        crate.invalidateSampler();
     }
 
     /**
      * Loads all crates
      */
     public static void load() {
+        build(parse(configuration));
+    }
+
+    /**
+     * Parses all crates of a setting, without building them
+     * May be called from any thread.
+     *
+     * @param setting the setting
+     * @return the parsed crates
+     */
+    public static @Nonnull List<CrateDefinition> parse(@Nonnull BSetting setting) {
+        BValidate.notNull(setting);
+
+        //Parses all crates
+        return setting.getKeys().stream().map(crate -> {
+            Size size = Size.valueOf(setting.getString(crate + ".size"));
+
+            //Skips the prizes stored beyond the size of the crate, instead of failing the whole load
+            List<PrizeDefinition> prizes = setting.getConfigurationSection(crate + ".prizes").stream().filter(slot -> {
+                int index = Integer.parseInt(slot);
+                if (index < 0 || index >= size.getDimension()) {
+                    BCrateCore.getBLogger().warn("Skipped the prize " + slot + " of the crate " + crate + ", beyond its size.");
+                    return false;
+                }
+                return true;
+            }).map(slot -> new PrizeDefinition(
+                    Integer.parseInt(slot),
+                    setting.getItemStack(crate + ".prizes." + slot + ".item"),
+                    setting.getItemStack(crate + ".prizes." + slot + ".skin"),
+                    setting.getDouble(crate + ".prizes." + slot + ".chance"),
+                    setting.getBoolean(crate + ".prizes." + slot + ".rarity"),
+                    setting.getStringList(crate + ".prizes." + slot + ".tags"),
+                    setting.isString(crate + ".prizes." + slot + ".stock").orElse(null))
+            ).collect(Collectors.toList());
+
+            return new CrateDefinition(
+                    crate,
+                    size,
+                    setting.getString(crate + ".location"),
+                    Color.valueOf(setting.getString(crate + ".color")),
+                    setting.getString(crate + ".key"),
+                    setting.getItemStackList(crate + ".skin"),
+                    setting.getString(crate + ".direction"),
+                    Math.max(1, setting.isInt(crate + ".rewards").orElse(2)),
+                    setting.isBoolean(crate + ".distinct").orElse(false),
+                    Math.max(0, setting.isInt(crate + ".pity").orElse(0)),
+                    prizes);
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * Builds the parsed crates, with their menus and structures
+     *
+     * @param parsed the parsed crates
+     */
+    private static void build(@Nonnull List<CrateDefinition> parsed) {
+        BValidate.notNull(parsed);
+
         crates.clear();
 
-        //Loads all crates
-        configuration.getKeys().forEach(crate -> {
-            List<Prize> prizes = configuration.getConfigurationSection(crate + ".prizes").stream().map(slot -> {
-                ItemStack item = configuration.getItemStack(crate + ".prizes." + slot + ".item");
-                ItemStack skin = configuration.getItemStack(crate + ".prizes." + slot + ".skin");
-                double chance = configuration.getDouble(crate + ".prizes." + slot + ".chance");
-                boolean rare = configuration.getBoolean(crate + ".prizes." + slot + ".rarity");
-                List<Tag> tags = configuration.getStringList(crate + ".prizes." + slot + ".tags").stream().map(tag ->
-                        TagManager.get(tag).orElseThrow(IllegalPathStateException::new)).collect(Collectors.toList());
-
-                return new Prize(item, skin, Integer.parseInt(slot), chance, rare, tags);
-            }).collect(Collectors.toList());
-
-            Size size = Size.valueOf(configuration.getString(crate + ".size"));
-            Location location = BLocation.getAsLocation(configuration.getString(crate + ".location"));
-            Color color = Color.valueOf(configuration.getString(crate + ".color"));
-            Key key = KeyManager.get(configuration.getString(crate + ".key")).orElseThrow(IllegalPathStateException::new);
-            List<ItemStack> skin = configuration.getItemStackList(crate + ".skin");
-            String direction = configuration.getString(crate + ".direction");
-
-            crates.put(crate, direction.equals("NS") ?
-                    new CrateNS(crate, size, prizes, location, color, key, skin, createStructure(location, true))
-                    :
-                    new CrateEW(crate, size, prizes, location, color, key, skin, createStructure(location, false)));
-        });
+        //Builds all crates
+        parsed.forEach(definition -> crates.put(definition.name(), build(definition)));
+    }
+
+    /**
+     * Builds a parsed crate, with its menus and structure
+     *
+     * @param definition the parsed crate
+     * @return the built crate
+     */
+    private static @Nonnull Crate build(@Nonnull CrateDefinition definition) {
+        BValidate.notNull(definition);
+
+        List<Prize> prizes = definition.prizes().stream().map(PrizeManager::build).collect(Collectors.toList());
+        Location location = BLocation.getAsLocation(definition.location());
+        Key key = KeyManager.get(definition.key()).orElseThrow(IllegalPathStateException::new);
+
+        Crate crate = definition.direction().equals("NS") ?
+                new CrateNS(definition.name(), definition.size(), prizes, location, definition.color(), key, definition.skin(), createStructure(location, true))
+                :
+                new CrateEW(definition.name(), definition.size(), prizes, location, definition.color(), key, definition.skin(), createStructure(location, false));
+        crate.rewards().set(definition.rewards());
+        crate.distinct().set(definition.distinct());
+        crate.pity().set(definition.pity());
+
+        return crate;
     }
 
     /**
@@ -466,13 +1123,19 @@ public class CrateManager {
             configuration.set(crate.name().get() + ".key", crate.key().get().name().get());
             configuration.set(crate.name().get() + ".skin", crate.skin().get());
             configuration.set(crate.name().get() + ".direction", crate.direction().get());
+            configuration.set(crate.name().get() + ".rewards", crate.rewards().get());
+            configuration.set(crate.name().get() + ".distinct", crate.distinct().get());
+            configuration.set(crate.name().get() + ".pity", crate.pity().get());
 
-            crate.prizes().get().forEach(prize -> {
+            crate.prizes().forEach(prize -> {
                 configuration.set(crate.name().get() + ".prizes." + prize.slot().get() + ".item", prize.item().get());
                 configuration.set(crate.name().get() + ".prizes." + prize.slot().get() + ".skin", prize.skin().get());
                 configuration.set(crate.name().get() + ".prizes." + prize.slot().get() + ".chance", prize.chance().get());
                 configuration.set(crate.name().get() + ".prizes." + prize.slot().get() + ".rarity", prize.rarity().get());
                 configuration.set(crate.name().get() + ".prizes." + prize.slot().get() + ".tags", prize.tags().get().stream().map(tag -> tag.name().get()).collect(Collectors.toList()));
+                prize.stock().get().ifPresentOrElse(
+                        stock -> configuration.set(crate.name().get() + ".prizes." + prize.slot().get() + ".stock", stock),
+                        () -> configuration.unset(crate.name().get() + ".prizes." + prize.slot().get() + ".stock"));
             });
         });
 
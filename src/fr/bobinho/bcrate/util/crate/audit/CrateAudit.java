@@ -0,0 +1,257 @@
+package fr.bobinho.bcrate.util.crate.audit;
+
+import fr.bobinho.bcrate.BCrateCore;
+import fr.bobinho.bcrate.api.validate.BValidate;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Class representing the audit log of the crate opens
+ * <p>
+ * Each audited open is drawn from its own seed, which is appended to a daily log by a dedicated thread
+ * with the drawn slots and the stock takes which exhausted a prize, so the open can be replayed later to prove what was rolled.
+ */
+public final class CrateAudit {
+
+    /**
+     * Fields
+     */
+    private static final File directory = new File(BCrateCore.getInstance().getDataFolder(), "audit");
+    private static ExecutorService executor;
+
+    /**
+     * Record representing an audited open
+     *
+     * @param seed        the seed, also identifying the open
+     * @param time        the time in milliseconds
+     * @param player      the player
+     * @param crate       the crate name
+     * @param fingerprint the fingerprint of the prize table
+     * @param opens       the number of opens
+     * @param rewards     the number of prizes won by open
+     * @param distinct    true if a prize could only be won once by open
+     * @param threshold   the number of opens without rare prize before one was forced, 0 if disabled
+     * @param pity        the pity counter of the player before the opens
+     * @param redraws     the number of draws made again because the stock of the drawn prize ran out
+     * @param failed      the numbers of the stock takes which failed
+     * @param emptied     the numbers of the stock takes which took the last stock of their prize
+     * @param slots       the number of draws of each slot
+     */
+    public record Entry(long seed, long time, @Nonnull UUID player, @Nonnull String crate, long fingerprint, int opens, int rewards, boolean distinct,
+                        int threshold, int pity, int redraws, @Nonnull List<Integer> failed, @Nonnull List<Integer> emptied, @Nonnull Map<Integer, Integer> slots) {
+
+        /**
+         * Gets the identifier of the open
+         *
+         * @return the identifier
+         */
+        public @Nonnull String id() {
+            return Long.toHexString(seed);
+        }
+
+        /**
+         * Serializes the entry
+         *
+         * @return the serialized entry
+         */
+        private @Nonnull String serialize() {
+            return String.join(";",
+                    id(),
+                    String.valueOf(time),
+                    player.toString(),
+                    crate,
+                    Long.toHexString(fingerprint),
+                    String.valueOf(opens),
+                    String.valueOf(rewards),
+                    String.valueOf(distinct),
+                    String.valueOf(threshold),
+                    String.valueOf(pity),
+                    String.valueOf(redraws),
+                    failed.stream().map(String::valueOf).collect(Collectors.joining(",")),
+                    emptied.stream().map(String::valueOf).collect(Collectors.joining(",")),
+                    slots.entrySet().stream().map(slot -> slot.getKey() + "x" + slot.getValue()).collect(Collectors.joining(",")));
+        }
+
+        /**
+         * Deserializes an entry
+         *
+         * @param line the serialized entry
+         * @return the entry, empty if the line is not valid
+         */
+        private static @Nonnull Optional<Entry> deserialize(@Nonnull String line) {
+            String[] parts = line.split(";", -1);
+
+            try {
+                Map<Integer, Integer> slots = new TreeMap<>();
+                Arrays.stream(parts[parts.length - 1].split(",")).filter(slot -> !slot.isEmpty()).forEach(slot -> {
+                    String[] count = slot.split("x");
+                    slots.put(Integer.parseInt(count[0]), Integer.parseInt(count[1]));
+                });
+
+                //The entries audited before the stocks have no redraws, and those audited before the takes have no takes
+                return Optional.of(new Entry(Long.parseUnsignedLong(parts[0], 16), Long.parseLong(parts[1]), UUID.fromString(parts[2]), parts[3],
+                        Long.parseUnsignedLong(parts[4], 16), Integer.parseInt(parts[5]), Integer.parseInt(parts[6]), Boolean.parseBoolean(parts[7]),
+                        Integer.parseInt(parts[8]), Integer.parseInt(parts[9]), parts.length > 11 ? Integer.parseInt(parts[10]) : 0,
+                        parts.length > 13 ? parseTakes(parts[11]) : Collections.emptyList(), parts.length > 13 ? parseTakes(parts[12]) : Collections.emptyList(), slots));
+            } catch (RuntimeException e) {
+                return Optional.empty();
+            }
+        }
+
+        /**
+         * Parses the numbers of stock takes
+         *
+         * @param part the serialized numbers
+         * @return the numbers
+         */
+        private static @Nonnull List<Integer> parseTakes(@Nonnull String part) {
+            return Arrays.stream(part.split(",")).filter(take -> !take.isEmpty()).map(Integer::parseInt).toList();
+        }
+
+    }
+
+    /**
+     * Unitilizable constructor (utility class)
+     */
+    private CrateAudit() {
+    }
+
+    /**
+     * Starts the audit
+     */
+    public static synchronized void start() {
+        if (isEnabled()) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BCrate-Audit");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stops the audit, writing all pending entries
+     */
+    public static synchronized void stop() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        //Waits the last writes
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                BCrateCore.getBLogger().error("Some audit entries could not be written in time!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        executor = null;
+    }
+
+    /**
+     * Checks if the audit is enabled
+     *
+     * @return true if the audit is enabled, false otherwise
+     */
+    public static boolean isEnabled() {
+        return executor != null;
+    }
+
+    /**
+     * Records an audited open
+     *
+     * @param entry the entry
+     */
+    public static void record(@Nonnull Entry entry) {
+        BValidate.notNull(entry);
+
+        ExecutorService current = executor;
+        if (current == null) {
+            return;
+        }
+
+        String line = entry.serialize() + System.lineSeparator();
+        current.execute(() -> {
+            try {
+                Files.createDirectories(directory.toPath());
+
+                try (Writer writer = Files.newBufferedWriter(getFile(LocalDate.now()), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    writer.write(line);
+                }
+            } catch (IOException e) {
+                BCrateCore.getBLogger().error("Could not write the crate audit!", e);
+            }
+        });
+    }
+
+    /**
+     * Finds an audited open, from the most recent log
+     * Reads the logs, must not be called from the main thread.
+     *
+     * @param id the identifier of the open
+     * @return the entry, empty if the open is not found
+     */
+    public static @Nonnull Optional<Entry> find(@Nonnull String id) {
+        BValidate.notNull(id);
+
+        //If there is no log, no need to continue
+        if (!directory.isDirectory()) {
+            return Optional.empty();
+        }
+
+        List<Path> logs;
+        try (Stream<Path> files = Files.list(directory.toPath())) {
+            logs = files.filter(path -> path.getFileName().toString().endsWith(".log"))
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+        } catch (IOException e) {
+            BCrateCore.getBLogger().error("Could not list the crate audit logs!", e);
+            return Optional.empty();
+        }
+
+        String prefix = id.toLowerCase() + ";";
+        for (Path log : logs) {
+            try (BufferedReader reader = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+                Optional<Entry> entry = reader.lines().filter(line -> line.startsWith(prefix)).findFirst().flatMap(Entry::deserialize);
+
+                if (entry.isPresent()) {
+                    return entry;
+                }
+            } catch (IOException e) {
+                BCrateCore.getBLogger().error("Could not read the crate audit log " + log.getFileName() + "!", e);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Gets the log of a day
+     *
+     * @param day the day
+     * @return the log of the day
+     */
+    private static @Nonnull Path getFile(@Nonnull LocalDate day) {
+        return new File(directory, day + ".log").toPath();
+    }
+
+}
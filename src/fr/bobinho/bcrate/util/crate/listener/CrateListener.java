@@ -8,6 +8,8 @@ import com.comphenix.protocol.wrappers.EnumWrappers;
 import fr.bobinho.bcrate.BCrateCore;
 import fr.bobinho.bcrate.api.event.BEvent;
 import fr.bobinho.bcrate.api.notification.BPlaceHolder;
+import fr.bobinho.bcrate.api.scheduler.BScheduler;
+import fr.bobinho.bcrate.util.claim.ClaimManager;
 import fr.bobinho.bcrate.util.crate.Crate;
 import fr.bobinho.bcrate.util.crate.CrateManager;
 import fr.bobinho.bcrate.util.crate.edit.color.Color;
@@ -52,43 +54,50 @@ public class CrateListener {
 
                     //Interacts with the crate (left-click)
                     if (event.getPacket().getEnumEntityUseActions().read(0).getAction() == EnumWrappers.EntityUseAction.ATTACK) {
-                        //Checks if the player has the key
-                        if (!PlayerManager.hasKey(event.getPlayer().getUniqueId(), crate)) {
-                            event.getPlayer().sendMessage(PlayerNotification.PLAYER_HAVENT_KEY.getNotification(new BPlaceHolder("%name%", crate.key().get().name().get())));
-                            return;
-                        }
-
-                        //Checks if the player has the key
-                        if (CrateManager.isEmpty(crate.name().get())) {
-                            event.getPlayer().sendMessage(CrateNotification.CRATE_IS_EMPTY.getNotification());
-                            return;
-                        }
-
-                        //Checks if the crate is already used
-                        if (!CrateManager.canPlay(crate.name().get())) {
-                            event.getPlayer().sendMessage(CrateNotification.CRATE_ALREADY_USED.getNotification());
-                            return;
-                        }
-
-                        //Checks if the player inventory is full
-                        if (!PlayerManager.canPlay(event.getPlayer().getUniqueId(), crate)) {
-                            event.getPlayer().sendMessage(PlayerNotification.PLAYER_INVENTORY_FULL.getNotification(new BPlaceHolder("%player%", event.getPlayer().getDisplayName())));
-                            return;
-                        }
-
-                        List<Prize> items = CrateManager.play(crate.name().get());
-
-                        //Checks if the player already have open a crate
-                        if (PlayerManager.isOpeningCrate(event.getPlayer().getUniqueId())) {
-                            event.getPlayer().sendMessage(PlayerNotification.PLAYER_ALREADY_USED_CRATE.getNotification());
-                            return;
-                        }
-
-                        //Launchs the crate
-                        crate.wait(event.getPlayer(), items);
-
-                        //Messages
-                        event.getPlayer().sendMessage(CrateNotification.CRATE_LAUNCH.getNotification(new BPlaceHolder("%name%", crate.name().get())));
+                        //Handles the open on the main thread, the packet is received on a netty thread
+                        BScheduler.syncScheduler().run(() -> {
+
+                            //If the player left meanwhile, no need to continue
+                            if (!event.getPlayer().isOnline()) {
+                                return;
+                            }
+
+                            //Checks if the player has the key
+                            if (!PlayerManager.hasKey(event.getPlayer().getUniqueId(), crate)) {
+                                event.getPlayer().sendMessage(PlayerNotification.PLAYER_HAVENT_KEY.getNotification(new BPlaceHolder("%name%", crate.key().get().name().get())));
+                                return;
+                            }
+
+                            //Checks if the player has the key
+                            if (CrateManager.isEmpty(crate.name().get())) {
+                                event.getPlayer().sendMessage(CrateNotification.CRATE_IS_EMPTY.getNotification());
+                                return;
+                            }
+
+                            //Checks if the crate is already used
+                            if (!CrateManager.canPlay(crate.name().get())) {
+                                event.getPlayer().sendMessage(CrateNotification.CRATE_ALREADY_USED.getNotification());
+                                return;
+                            }
+
+                            //Checks if the player already have open a crate
+                            if (PlayerManager.isOpeningCrate(event.getPlayer().getUniqueId())) {
+                                event.getPlayer().sendMessage(PlayerNotification.PLAYER_ALREADY_USED_CRATE.getNotification());
+                                return;
+                            }
+
+                            //Rolls the prizes once the open is sure, so an audited open is always a real one
+                            List<Prize> items = CrateManager.play(event.getPlayer(), crate.name().get());
+
+                            //Holds the prizes until their delivery, the prizes which do not fit are then kept in the claims
+                            ClaimManager.hold(event.getPlayer().getUniqueId(), items.stream().map(prize -> prize.item().get()).toList());
+
+                            //Launchs the crate
+                            crate.wait(event.getPlayer(), items);
+
+                            //Messages
+                            event.getPlayer().sendMessage(CrateNotification.CRATE_LAUNCH.getNotification(new BPlaceHolder("%name%", crate.name().get())));
+                        });
                     }
 
                     //Interacts with the crate (right-click)
@@ -34,6 +34,27 @@ public enum CrateNotification implements BNotification {
     CRATE_SKIN_OPEN,
     CRATE_SKIN_LEFT,
     CRATE_SKIN_RIGHT,
+    CRATE_STORAGE_STATS,
+    CRATE_MASS_OPENED,
+    CRATE_INVALID_REWARDS,
+    CRATE_REWARDS_CHANGED,
+    CRATE_INVALID_PITY,
+    CRATE_PITY_CHANGED,
+    CRATE_INVALID_STOCK,
+    CRATE_POOL_CHANGED,
+    CRATE_PRIZE_NOT_FOUND,
+    CRATE_STOCK_CHANGED,
+    CRATE_INVALID_COUNT,
+    CRATE_INVALID_DRAWS,
+    CRATE_SIMULATION_STARTED,
+    CRATE_SIMULATION_PRIZE,
+    CRATE_SIMULATION_RESULT,
+    CRATE_AUDIT_NOT_FOUND,
+    CRATE_AUDIT_INFO,
+    CRATE_AUDIT_MATCH,
+    CRATE_AUDIT_MISMATCH,
+    CRATE_AUDIT_TABLE_CHANGED,
+    CRATE_AUDIT_STOCK_CHANGED,
     UTIL_NOT_A_NUMBER,
     UTIL_NOT_ONLINE;
 
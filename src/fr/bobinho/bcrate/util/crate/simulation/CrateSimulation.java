@@ -0,0 +1,166 @@
+package fr.bobinho.bcrate.util.crate.simulation;
+
+import fr.bobinho.bcrate.api.validate.BValidate;
+import fr.bobinho.bcrate.util.prize.Prize;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class representing the result of a drop rate simulation
+ */
+public final class CrateSimulation {
+
+    /**
+     * Fields
+     */
+    private final List<Prize> prizes;
+    private final long[] observed;
+    private final double[] expected;
+    private final long draws;
+    private final long duration;
+
+    /**
+     * Creates a new simulation result
+     *
+     * @param prizes   the simulated prizes
+     * @param observed the number of draws of each prize
+     * @param expected the expected probability of each prize
+     * @param draws    the number of draws
+     * @param duration the duration in nanoseconds
+     */
+    CrateSimulation(@Nonnull List<Prize> prizes, @Nonnull long[] observed, @Nonnull double[] expected, long draws, long duration) {
+        BValidate.notNull(prizes);
+        BValidate.notNull(observed);
+        BValidate.notNull(expected);
+        BValidate.isTrue(prizes.size() == observed.length && observed.length == expected.length);
+
+        this.prizes = List.copyOf(prizes);
+        this.observed = observed;
+        this.expected = expected;
+        this.draws = draws;
+        this.duration = duration;
+    }
+
+    /**
+     * Gets the simulated prizes
+     *
+     * @return the simulated prizes
+     */
+    public @Nonnull List<Prize> getPrizes() {
+        return prizes;
+    }
+
+    /**
+     * Gets the number of draws
+     *
+     * @return the number of draws
+     */
+    public long getDraws() {
+        return draws;
+    }
+
+    /**
+     * Gets the number of draws of a prize
+     *
+     * @param index the prize index
+     * @return the number of draws of the prize
+     */
+    public long getObserved(int index) {
+        return observed[index];
+    }
+
+    /**
+     * Gets the observed probability of a prize
+     *
+     * @param index the prize index
+     * @return the observed probability of the prize
+     */
+    public double getObservedProbability(int index) {
+        return draws == 0 ? 0 : (double) observed[index] / draws;
+    }
+
+    /**
+     * Gets the expected probability of a prize
+     *
+     * @param index the prize index
+     * @return the expected probability of the prize
+     */
+    public double getExpectedProbability(int index) {
+        return expected[index];
+    }
+
+    /**
+     * Gets the duration
+     *
+     * @return the duration in nanoseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Gets the throughput
+     *
+     * @return the number of draws per second
+     */
+    public double getDrawsPerSecond() {
+        return duration == 0 ? 0 : draws * 1_000_000_000.0D / duration;
+    }
+
+    /**
+     * Gets the chi-square deviation between the observed and expected draws
+     *
+     * @return the chi-square deviation
+     */
+    public double getChiSquare() {
+        double chiSquare = 0;
+
+        for (int i = 0; i < observed.length; i++) {
+            double expectedDraws = expected[i] * draws;
+
+            if (expectedDraws > 0) {
+                chiSquare = chiSquare + Math.pow(observed[i] - expectedDraws, 2) / expectedDraws;
+            }
+        }
+
+        return chiSquare;
+    }
+
+    /**
+     * Gets the degrees of freedom of the chi-square deviation, the prizes never expected being left out
+     *
+     * @return the degrees of freedom
+     */
+    public int getDegreesOfFreedom() {
+        return Math.max(1, (int) Arrays.stream(expected).filter(probability -> probability > 0).count() - 1);
+    }
+
+    /**
+     * Gets the probability of a deviation at least as large with correct drop rates
+     * The chi-square distribution is approximated by the Wilson-Hilferty transformation.
+     *
+     * @return the p-value
+     */
+    public double getPValue() {
+        double degrees = getDegreesOfFreedom();
+        double z = (Math.cbrt(getChiSquare() / degrees) - (1 - 2 / (9 * degrees))) / Math.sqrt(2 / (9 * degrees));
+
+        return 0.5 * erfc(z / Math.sqrt(2));
+    }
+
+    /**
+     * Computes the complementary error function (Abramowitz and Stegun 7.1.26)
+     *
+     * @param x the value
+     * @return the complementary error function
+     */
+    private static double erfc(double x) {
+        double t = 1 / (1 + 0.3275911 * Math.abs(x));
+        double erf = 1 - t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429)))) * Math.exp(-x * x);
+
+        return x >= 0 ? 1 - erf : 1 + erf;
+    }
+
+}
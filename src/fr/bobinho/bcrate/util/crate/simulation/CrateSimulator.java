@@ -0,0 +1,136 @@
+package fr.bobinho.bcrate.util.crate.simulation;
+
+import fr.bobinho.bcrate.api.validate.BValidate;
+import fr.bobinho.bcrate.util.prize.Prize;
+import fr.bobinho.bcrate.util.prize.PrizeSampler;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Class simulating the draws of a crate to verify its drop rates
+ * <p>
+ * The draws are split between the workers of a fork-join pool, each chunk drawing with its own split random,
+ * so the workers never share any state until their counts are summed.
+ * The simulator does not touch the server and can be run from any thread.
+ */
+public final class CrateSimulator {
+
+    /**
+     * Fields
+     */
+    private static final long CHUNK = 1 << 16;
+
+    /**
+     * Unitilizable constructor (utility class)
+     */
+    private CrateSimulator() {
+    }
+
+    /**
+     * Class representing a chunk of draws
+     */
+    private static final class Draws extends RecursiveTask<long[]> {
+
+        /**
+         * Fields
+         */
+        private final PrizeSampler sampler;
+        private final SplittableRandom random;
+        private final long draws;
+
+        /**
+         * Creates a new chunk of draws
+         *
+         * @param sampler the compiled prize table
+         * @param random  the random of the chunk
+         * @param draws   the number of draws
+         */
+        private Draws(@Nonnull PrizeSampler sampler, @Nonnull SplittableRandom random, long draws) {
+            this.sampler = sampler;
+            this.random = random;
+            this.draws = draws;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected long[] compute() {
+
+            //Splits the chunk in two halves, the forked one getting a new random
+            if (draws > CHUNK) {
+                Draws left = new Draws(sampler, random.split(), draws / 2);
+                Draws right = new Draws(sampler, random, draws - draws / 2);
+
+                left.fork();
+                long[] counts = right.compute();
+                long[] leftCounts = left.join();
+
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = counts[i] + leftCounts[i];
+                }
+                return counts;
+            }
+
+            long[] counts = new long[sampler.size()];
+            for (long i = 0; i < draws; i++) {
+                counts[sampler.sampleIndex(random.nextDouble())]++;
+            }
+            return counts;
+        }
+
+    }
+
+    /**
+     * Simulates draws on the common fork-join pool
+     *
+     * @param sampler the compiled prize table
+     * @param draws   the number of draws
+     * @return the simulation result
+     */
+    public static @Nonnull CrateSimulation simulate(@Nonnull PrizeSampler sampler, long draws) {
+        return simulate(sampler, draws, ForkJoinPool.commonPool(), new SplittableRandom());
+    }
+
+    /**
+     * Simulates draws
+     * The expected draws come from the live weights of the table, so the prizes whose stock is exhausted are expected
+     * to be never drawn.
+     *
+     * @param sampler the compiled prize table
+     * @param draws   the number of draws
+     * @param pool    the fork-join pool
+     * @param random  the root random, seeded for a reproducible simulation
+     * @return the simulation result
+     */
+    public static @Nonnull CrateSimulation simulate(@Nonnull PrizeSampler sampler, long draws, @Nonnull ForkJoinPool pool, @Nonnull SplittableRandom random) {
+        BValidate.notNull(sampler);
+        BValidate.notNull(pool);
+        BValidate.notNull(random);
+        BValidate.isTrue(draws >= 0);
+
+        //If there is no prize to draw, no need to continue
+        if (sampler.isEmpty()) {
+            return new CrateSimulation(List.of(), new long[0], new double[0], 0, 0);
+        }
+
+        List<Prize> prizes = new ArrayList<>();
+        double[] expected = new double[sampler.size()];
+        for (int i = 0; i < sampler.size(); i++) {
+            prizes.add(sampler.get(i));
+            expected[i] = sampler.getProbability(i);
+        }
+
+        long start = System.nanoTime();
+        long[] observed = pool.invoke(new Draws(sampler, random, draws));
+        long duration = System.nanoTime() - start;
+
+        return new CrateSimulation(prizes, observed, expected, draws, duration);
+    }
+
+}
@@ -4,6 +4,9 @@ import fr.bobinho.bcrate.api.entity.base.BArmorStandEntity;
 import fr.bobinho.bcrate.api.entity.type.BArmoredEntity;
 import fr.bobinho.bcrate.api.location.BLocation;
 import fr.bobinho.bcrate.api.notification.BPlaceHolder;
+import fr.bobinho.bcrate.api.packet.BPacket;
+import fr.bobinho.bcrate.api.random.BRandom;
+import fr.bobinho.bcrate.util.claim.ClaimManager;
 import fr.bobinho.bcrate.util.crate.Crate;
 import fr.bobinho.bcrate.util.crate.edit.color.Color;
 import fr.bobinho.bcrate.util.crate.edit.size.Size;
@@ -13,6 +16,7 @@ import fr.bobinho.bcrate.util.player.PlayerManager;
 import fr.bobinho.bcrate.util.prize.Prize;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.Material;
 import org.bukkit.Particle;
 import org.bukkit.Sound;
 import org.bukkit.entity.Player;
@@ -21,7 +25,7 @@ import org.bukkit.inventory.ItemStack;
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Class representing the crate EW
@@ -68,7 +72,7 @@ public class CrateEW extends Crate {
                     .setRightArmPose(-90, 0, 0)
                     .setLeftArmPose(-90, 0, 0)
                     .teleport(newLocation)
-                    .setEquipment(BArmoredEntity.Equipment.HELMET, items.get(i - 2).skin().get()).render();
+                    .setEquipment(BArmoredEntity.Equipment.HELMET, i - 2 < items.size() ? items.get(i - 2).skin().get() : new ItemStack(Material.AIR)).render();
         });
 
         location().get().getWorld().playSound(location().get(), Sound.ENTITY_EVOKER_CAST_SPELL, 1, 2);
@@ -91,7 +95,8 @@ public class CrateEW extends Crate {
                     .teleport(newLocation)
                     .render();
         });
-        animation().run(() -> {
+        //Sends each frame to each viewer as one bundle
+        animation().run(() -> BPacket.bundle(() -> {
 
             if (metadata().has("restart")) {
                 double degree = metadata().getNonNull("restart:degree");
@@ -128,8 +133,8 @@ public class CrateEW extends Crate {
                         }
                     }
 
-                    //Gives prizes
-                    player.getInventory().addItem(items.stream().map(prize -> prize.item().get()).toArray(ItemStack[]::new));
+                    //Gives prizes held since the roll, those which do not fit are kept in the claims
+                    ClaimManager.release(player);
                     metadata().add("close").remove("restart").set("open:degree", 130);
                     List.of(2, 3).forEach(i -> {
                         Location newLocation = location().get().add(0, 0.5, 0);
@@ -196,7 +201,7 @@ public class CrateEW extends Crate {
                 if (degree > 130) {
                     restart();
                 } else {
-                    Random r = new Random();
+                    SplittableRandom r = BRandom.current();
                     for (int j = 0; j < 8; j++) {
                         location().get().getWorld().spawnParticle(
                                 Particle.REDSTONE,
@@ -241,7 +246,7 @@ public class CrateEW extends Crate {
                     metadata().set("spine:degree", (degree + 10.0F) % 360);
                 }
             }
-        });
+        }));
     }
 
 }
\ No newline at end of file
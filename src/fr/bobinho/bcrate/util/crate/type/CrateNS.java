@@ -4,6 +4,9 @@ import fr.bobinho.bcrate.api.entity.base.BArmorStandEntity;
 import fr.bobinho.bcrate.api.entity.type.BArmoredEntity;
 import fr.bobinho.bcrate.api.location.BLocation;
 import fr.bobinho.bcrate.api.notification.BPlaceHolder;
+import fr.bobinho.bcrate.api.packet.BPacket;
+import fr.bobinho.bcrate.api.random.BRandom;
+import fr.bobinho.bcrate.util.claim.ClaimManager;
 import fr.bobinho.bcrate.util.crate.Crate;
 import fr.bobinho.bcrate.util.crate.edit.color.Color;
 import fr.bobinho.bcrate.util.crate.edit.size.Size;
@@ -13,6 +16,7 @@ import fr.bobinho.bcrate.util.player.PlayerManager;
 import fr.bobinho.bcrate.util.prize.Prize;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.Material;
 import org.bukkit.Particle;
 import org.bukkit.Sound;
 import org.bukkit.entity.Player;
@@ -66,7 +70,7 @@ public class CrateNS extends Crate {
                     .setRightArmPose(-90, 0, 0)
                     .setLeftArmPose(-90, 0, 0)
                     .teleport(newLocation)
-                    .setEquipment(BArmoredEntity.Equipment.HELMET, items.get(i - 2).skin().get()).render();
+                    .setEquipment(BArmoredEntity.Equipment.HELMET, i - 2 < items.size() ? items.get(i - 2).skin().get() : new ItemStack(Material.AIR)).render();
         });
 
         location().get().getWorld().playSound(location().get(), Sound.ENTITY_EVOKER_CAST_SPELL, 1, 2);
@@ -90,7 +94,8 @@ public class CrateNS extends Crate {
                     .render();
         });
 
-        animation().run(() -> {
+        //Sends each frame to each viewer as one bundle
+        animation().run(() -> BPacket.bundle(() -> {
 
             if (metadata().has("restart")) {
                 double degree = metadata().getNonNull("restart:degree");
@@ -127,8 +132,8 @@ public class CrateNS extends Crate {
                         }
                     }
 
-                    //Gives prizes
-                    player.getInventory().addItem(items.stream().map(prize -> prize.item().get()).toArray(ItemStack[]::new));
+                    //Gives prizes held since the roll, those which do not fit are kept in the claims
+                    ClaimManager.release(player);
                     metadata().add("close").remove("restart").set("open:degree", 130);
                     List.of(2, 3).forEach(i -> {
                         Location newLocation = location().get().add(0, 0.5, 0);
@@ -195,7 +200,7 @@ public class CrateNS extends Crate {
                 if (degree > 130) {
                     restart();
                 } else {
-                    Random r = new Random();
+                    SplittableRandom r = BRandom.current();
                     for (int j = 0; j < 8; j++) {
                         List<Integer> rgb = new ArrayList<>(List.of(255, 0, r.nextInt(256)));
                         Collections.shuffle(rgb);
@@ -242,7 +247,7 @@ public class CrateNS extends Crate {
                     metadata().set("spine:degree", (degree + 10.0F) % 360);
                 }
             }
-        });
+        }));
     }
 
 }
\ No newline at end of file
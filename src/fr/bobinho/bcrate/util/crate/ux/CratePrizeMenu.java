@@ -48,7 +48,7 @@ public class CratePrizeMenu extends BMenu {
 
         getInventory().clear();
 
-        crate.get().prizes().get().forEach(prize -> setItem(prize.slot().get(), prize.getEditBackground()));
+        crate.get().prizes().forEach(prize -> setItem(prize.slot().get(), prize.getEditBackground()));
 
         player.openInventory(getInventory());
     }
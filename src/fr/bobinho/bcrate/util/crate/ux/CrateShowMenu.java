@@ -50,7 +50,7 @@ public class CrateShowMenu extends BMenu {
         BValidate.notNull(player);
 
         IntStream.range(0, getInventory().getSize()).forEach(i -> getInventory().setItem(i, crate.get().color().get().getBackground()));
-        crate.get().prizes().get().forEach(prize -> setItem(prize.slot().get(), prize.getBackground(crate.get())));
+        crate.get().prizes().forEach(prize -> setItem(prize.slot().get(), prize.getBackground(crate.get())));
 
         player.openInventory(getInventory());
     }
@@ -61,4 +61,23 @@ public class Key {
         return slot;
     }
 
+    /**
+     * Checks if the key has the same name, so a reloaded key is equal to the previous one
+     *
+     * @param object the object
+     * @return true if the key has the same name, false otherwise
+     */
+    @Override
+    public boolean equals(Object object) {
+        return this == object || object instanceof Key other && name.get().equals(other.name().get());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return name.get().hashCode();
+    }
+
 }
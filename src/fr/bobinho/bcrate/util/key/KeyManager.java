@@ -29,14 +29,25 @@ public class KeyManager {
      */
     private static final HashMap<String, Key> keys = new HashMap<>();
     private static final BSetting configuration = BCrateCore.getKeySetting();
-    private static final KeyEditMenu editMenu = new KeyEditMenu();
+    private static KeyEditMenu editMenu;
 
 
     /**
      * Registers the key manager
      */
     public static void register() {
-        load();
+        register(parse(configuration));
+    }
+
+    /**
+     * Registers the key manager with already parsed keys
+     *
+     * @param parsed the parsed keys
+     */
+    public static void register(@Nonnull Map<String, Key> parsed) {
+        BValidate.notNull(parsed);
+
+        keys.putAll(parsed);
         KeyListener.registerEvents();
     }
 
@@ -186,6 +197,11 @@ public class KeyManager {
     public static void openEditMenu(@Nonnull Player player) {
         BValidate.notNull(player);
 
+        //Creates the menu on first use, so the manager can be loaded off the main thread
+        if (editMenu == null) {
+            editMenu = new KeyEditMenu();
+        }
+
         editMenu.openInventory(player);
     }
 
@@ -212,18 +228,46 @@ public class KeyManager {
         load();
     }
 
+    /**
+     * Replaces all keys by the parsed ones, without saving
+     *
+     * @param parsed the parsed keys
+     */
+    public static void apply(@Nonnull Map<String, Key> parsed) {
+        BValidate.notNull(parsed);
+
+        keys.clear();
+        keys.putAll(parsed);
+    }
+
     /**
      * Loads all keys
      */
     public static void load() {
+        keys.putAll(parse(configuration));
+    }
 
-        //Loads all keys
-        configuration.getKeys().forEach(key -> {
-            ItemStack item = configuration.getItemStack(key + ".item");
-            int slot = configuration.getInt(key + ".slot");
+    /**
+     * Parses all keys of a setting
+     * May be called from any thread.
+     *
+     * @param setting the setting
+     * @return the parsed keys by name
+     */
+    public static @Nonnull Map<String, Key> parse(@Nonnull BSetting setting) {
+        BValidate.notNull(setting);
+
+        Map<String, Key> parsed = new HashMap<>();
 
-            keys.put(key, new Key(key, new BItemBuilder(item).name(BColor.color(key)).build(), slot));
+        //Parses all keys
+        setting.getKeys().forEach(key -> {
+            ItemStack item = setting.getItemStack(key + ".item");
+            int slot = setting.getInt(key + ".slot");
+
+            parsed.put(key, new Key(key, new BItemBuilder(item).name(BColor.color(key)).build(), slot));
         });
+
+        return parsed;
     }
 
     /**
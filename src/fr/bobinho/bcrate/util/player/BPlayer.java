@@ -21,6 +21,7 @@ public class BPlayer {
      */
     private final ReadOnlyMonoValuedAttribute<UUID> uuid;
     private final MultiValuedAttributeRelation<Key, Integer> keys;
+    private final PityCounter pity = new PityCounter();
     private final MonoValuedAttribute<Boolean> isOpeningCrate = new MonoValuedAttribute<>(false);
 
     /**
@@ -64,6 +65,24 @@ public class BPlayer {
         return keys;
     }
 
+    /**
+     * Gets the pity counters
+     *
+     * @return the pity counters
+     */
+    public @Nonnull PityCounter pity() {
+        return pity;
+    }
+
+    /**
+     * Checks if the player keys or pity counters changed since the last save
+     *
+     * @return true if the player keys or pity counters changed since the last save, false otherwise
+     */
+    public boolean isDirty() {
+        return keys.isDirty() || pity.isDirty();
+    }
+
     /**
      * Gets the opening crate wrapper
      *
@@ -0,0 +1,168 @@
+package fr.bobinho.bcrate.util.player;
+
+import fr.bobinho.bcrate.api.validate.BValidate;
+
+import javax.annotation.Nonnull;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Class representing the pity counters of a player, by crate name
+ * <p>
+ * The counters are kept in an open addressing table of primitive counts, so reading and updating
+ * a counter on each open costs one hash probe and never boxes nor allocates.
+ */
+public final class PityCounter {
+
+    /**
+     * Fields
+     */
+    private String[] crates = new String[8];
+    private int[] counts = new int[8];
+    private boolean[] dirty = new boolean[8];
+    private int size;
+    private int dirtySize;
+
+    /**
+     * Gets the slot of a crate in the table
+     *
+     * @param crate the crate name
+     * @return the slot of the crate, or of the free slot where it would be
+     */
+    private int find(@Nonnull String crate) {
+        int mask = crates.length - 1;
+        int slot = (crate.hashCode() * 0x9E3779B9) >>> 16 & mask;
+
+        while (crates[slot] != null && !crates[slot].equals(crate)) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Gets the counter of a crate
+     *
+     * @param crate the crate name
+     * @return the number of opens since the last rare prize
+     */
+    public int get(@Nonnull String crate) {
+        BValidate.notNull(crate);
+
+        return counts[find(crate)];
+    }
+
+    /**
+     * Sets the counter of a crate
+     *
+     * @param crate the crate name
+     * @param count the number of opens since the last rare prize
+     */
+    public void set(@Nonnull String crate, int count) {
+        BValidate.notNull(crate);
+        BValidate.isTrue(count >= 0);
+
+        int slot = find(crate);
+
+        //If the counter does not change, no need to continue
+        if (counts[slot] == count) {
+            return;
+        }
+
+        if (crates[slot] == null) {
+            crates[slot] = crate;
+            size++;
+        }
+        counts[slot] = count;
+
+        if (!dirty[slot]) {
+            dirty[slot] = true;
+            dirtySize++;
+        }
+
+        //Keeps the table at most half full
+        if (size * 2 > crates.length) {
+            resize();
+        }
+    }
+
+    /**
+     * Loads a stored counter, without marking it as changed
+     *
+     * @param crate the crate name
+     * @param count the number of opens since the last rare prize
+     */
+    void load(@Nonnull String crate, int count) {
+        BValidate.notNull(crate);
+
+        //If the counter is empty, no need to continue
+        if (count <= 0) {
+            return;
+        }
+
+        int slot = find(crate);
+        if (crates[slot] == null) {
+            crates[slot] = crate;
+            size++;
+        }
+        counts[slot] = count;
+
+        //Keeps the table at most half full
+        if (size * 2 > crates.length) {
+            resize();
+        }
+    }
+
+    /**
+     * Doubles the table
+     */
+    private void resize() {
+        String[] oldCrates = crates;
+        int[] oldCounts = counts;
+        boolean[] oldDirty = dirty;
+
+        crates = new String[oldCrates.length * 2];
+        counts = new int[oldCrates.length * 2];
+        dirty = new boolean[oldCrates.length * 2];
+
+        for (int i = 0; i < oldCrates.length; i++) {
+            if (oldCrates[i] != null) {
+                int slot = find(oldCrates[i]);
+                crates[slot] = oldCrates[i];
+                counts[slot] = oldCounts[i];
+                dirty[slot] = oldDirty[i];
+            }
+        }
+    }
+
+    /**
+     * Checks if a counter changed since the last poll
+     *
+     * @return true if a counter changed since the last poll, false otherwise
+     */
+    public boolean isDirty() {
+        return dirtySize > 0;
+    }
+
+    /**
+     * Gives the counters changed since the last poll and forgets them
+     *
+     * @param consumer the consumer of the crate names and counters
+     */
+    public void pollDirty(@Nonnull ObjIntConsumer<String> consumer) {
+        BValidate.notNull(consumer);
+
+        //If nothing changed, no need to continue
+        if (dirtySize == 0) {
+            return;
+        }
+
+        for (int i = 0; i < crates.length; i++) {
+            if (dirty[i]) {
+                dirty[i] = false;
+                consumer.accept(crates[i], counts[i]);
+            }
+        }
+        dirtySize = 0;
+    }
+
+}
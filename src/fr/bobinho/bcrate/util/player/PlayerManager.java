@@ -1,21 +1,27 @@
 package fr.bobinho.bcrate.util.player;
 
 import fr.bobinho.bcrate.BCrateCore;
+import fr.bobinho.bcrate.api.item.BInventoryFit;
 import fr.bobinho.bcrate.api.item.BItemBuilder;
-import fr.bobinho.bcrate.api.setting.BSetting;
+import fr.bobinho.bcrate.api.scheduler.BScheduler;
+import fr.bobinho.bcrate.api.setting.BSettingWriter;
 import fr.bobinho.bcrate.api.validate.BValidate;
 import fr.bobinho.bcrate.util.crate.Crate;
 import fr.bobinho.bcrate.util.key.Key;
 import fr.bobinho.bcrate.util.key.KeyManager;
 import fr.bobinho.bcrate.util.player.listener.PlayerListener;
-import fr.bobinho.bcrate.util.prize.Prize;
+import fr.bobinho.bcrate.util.player.storage.PlayerJournal;
+import fr.bobinho.bcrate.util.player.storage.PlayerStorage;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
-import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
 import javax.annotation.Nonnull;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -28,13 +34,43 @@ public class PlayerManager {
     /**
      * Fields
      */
-    private static final HashMap<UUID, BPlayer> players = new HashMap<>();
-    private static final BSetting configuration = BCrateCore.getPlayerSetting();
+    private static final Map<UUID, BPlayer> players = new ConcurrentHashMap<>();
+    private static final Map<UUID, BScheduler> unloadSchedulers = new HashMap<>();
+    private static final Set<UUID> dirtyPlayers = ConcurrentHashMap.newKeySet();
+    private static final PlayerStorage storage = BCrateCore.getPlayerStorage();
+    private static final PlayerJournal journal = BCrateCore.getPlayerJournal();
+    private static final String PITY = "pity:";
+    private static final Object offlineLock = new Object();
+    private static ExecutorService offlineExecutor;
+    private static BScheduler compactScheduler;
+
+    /**
+     * Prepares the player manager, replaying the journal on the opened storage
+     * May be called from any thread, before the registration.
+     */
+    public static void prepare() {
+
+        //Replays the journal on the storage before loading the players
+        if (journal != null) {
+            replay(journal.open());
+        }
+    }
 
     /**
      * Registers the player manager
      */
     public static void register() {
+        offlineExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BCrate-Offline");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (journal != null) {
+            compactScheduler = BScheduler.syncScheduler().every(BCrateCore.getConfigSetting().isInt("storage.journal.compaction-interval").orElse(6000));
+            compactScheduler.run(PlayerManager::compact);
+        }
+
         load();
         PlayerListener.registerEvents();
     }
@@ -43,6 +79,25 @@ public class PlayerManager {
      * Unregisters the player manager
      */
     public static void unregister() {
+        if (compactScheduler != null) {
+            compactScheduler.stop();
+        }
+        unloadSchedulers.values().forEach(BScheduler::stop);
+        unloadSchedulers.clear();
+
+        //Waits the offline changes before the last save
+        if (offlineExecutor != null) {
+            offlineExecutor.shutdown();
+            try {
+                if (!offlineExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                    BCrateCore.getBLogger().error("Some offline key changes could not be written in time!");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            offlineExecutor = null;
+        }
+
         save();
     }
 
@@ -80,16 +135,94 @@ public class PlayerManager {
     }
 
     /**
-     * Creates a new player
+     * Reads the stored keys of a player
+     *
+     * @param keys the stored key balances by key name
+     * @return the stored keys of the player
+     */
+    private static @Nonnull Map<Key, Integer> read(@Nonnull Map<String, Integer> keys) {
+        BValidate.notNull(keys);
+
+        return keys.entrySet().stream()
+                .filter(entry -> KeyManager.isRegistered(entry.getKey()))
+                .collect(Collectors.toMap(entry -> KeyManager.get(entry.getKey()).orElseThrow(), Map.Entry::getValue));
+    }
+
+    /**
+     * Creates a new player from its stored keys, if it is not already loaded
+     * May be called from any thread.
      *
      * @param uuid the uuid
      */
     public static void create(@Nonnull UUID uuid) {
         BValidate.notNull(uuid);
 
-        players.put(uuid, new BPlayer(uuid));
-        KeyManager.stream().forEach(key -> configuration.isInt(uuid + "." + key.name().get()).ifPresent(amount -> addKey(uuid, key, amount)));
+        //If the player is already loaded, no need to continue
+        if (isRegistered(uuid)) {
+            return;
+        }
+
+        //Loads after or before an offline change, never in the middle of one
+        synchronized (offlineLock) {
+            Map<String, Integer> stored = storage.load(uuid);
+            BPlayer bPlayer = new BPlayer(uuid, read(stored));
+
+            //Pity counters are stored with the key balances
+            stored.forEach((name, count) -> {
+                if (name.startsWith(PITY)) {
+                    bPlayer.pity().load(name.substring(PITY.length()), count);
+                }
+            });
+
+            players.putIfAbsent(uuid, bPlayer);
+        }
+    }
+
+    /**
+     * Schedules the unloading of a player after the configured delay
+     *
+     * @param uuid the uuid
+     */
+    public static void scheduleUnload(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+
+        cancelUnload(uuid);
+
+        BScheduler scheduler = BScheduler.syncScheduler().after(BCrateCore.getConfigSetting().isInt("storage.player.unload-delay").orElse(1200));
+        unloadSchedulers.put(uuid, scheduler);
+        scheduler.run(() -> {
+            unloadSchedulers.remove(uuid);
+            unload(uuid);
+        });
+    }
+
+    /**
+     * Cancels the scheduled unloading of a player
+     *
+     * @param uuid the uuid
+     */
+    public static void cancelUnload(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+
+        Optional.ofNullable(unloadSchedulers.remove(uuid)).ifPresent(BScheduler::stop);
+    }
+
+    /**
+     * Unloads a player, saving its changes first
+     *
+     * @param uuid the uuid
+     */
+    public static void unload(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+
+        //Keeps the player loaded while he is online or opening a crate
+        if (Bukkit.getPlayer(uuid) != null || isOpeningCrate(uuid)) {
+            return;
+        }
+
         save();
+        players.remove(uuid);
+        storage.unload(uuid);
     }
 
     /**
@@ -100,7 +233,17 @@ public class PlayerManager {
     public static void delete(@Nonnull UUID uuid) {
         BValidate.notNull(uuid);
 
-        get(uuid).ifPresent(bPlayer -> players.remove(bPlayer.uuid().get()));
+        get(uuid).ifPresent(bPlayer -> {
+            players.remove(bPlayer.uuid().get());
+            dirtyPlayers.remove(bPlayer.uuid().get());
+
+            if (journal != null) {
+                journal.appendDelete(bPlayer.uuid().get());
+            }
+
+            storage.delete(bPlayer.uuid().get());
+            storage.flush();
+        });
     }
 
     /**
@@ -137,23 +280,6 @@ public class PlayerManager {
                 .orElse(0);
     }
 
-    /**
-     * Clones the inventory
-     *
-     * @param inventory the inventory
-     * @return the cloned inventory
-     */
-    private static Inventory cloneInventory(@Nonnull Inventory inventory) {
-        BValidate.notNull(inventory);
-
-        Inventory copy = Bukkit.createInventory(null, 36);
-        for (int i = 0; i < 36; i++) {
-            copy.setItem(i, inventory.getItem(i) != null ? inventory.getItem(i).clone() : null);
-        }
-
-        return copy;
-    }
-
     /**
      * Checks if the player can withdraw key
      *
@@ -168,26 +294,7 @@ public class PlayerManager {
 
         //Checks if the player inventory with keys will be full
         return Optional.ofNullable(Bukkit.getPlayer(uuid))
-                .map(player -> cloneInventory(player.getInventory()).addItem(new BItemBuilder(key.item().get()).amount(amount).build()).isEmpty())
-                .orElse(false);
-    }
-
-    /**
-     * Checks if the player can play
-     *
-     * @param uuid  the uuid
-     * @param crate the crate
-     * @return true if the player can play, false otherwise
-     */
-    public static boolean canPlay(@Nonnull UUID uuid, @Nonnull Crate crate) {
-        BValidate.notNull(uuid);
-        BValidate.notNull(crate);
-
-        return Optional.ofNullable(Bukkit.getPlayer(uuid))
-                .map(player -> IntStream.range(0, crate.prizes().size())
-                        .boxed()
-                        .allMatch(i -> IntStream.range(i, crate.prizes().size())
-                                .allMatch(j -> cloneInventory(player.getInventory()).addItem(new ItemStack[]{crate.prizes().get(i).item().get(), crate.prizes().get(j).item().get()}).isEmpty())))
+                .map(player -> new BInventoryFit(player.getInventory()).fits(key.item().get(), amount))
                 .orElse(false);
     }
 
@@ -232,16 +339,127 @@ public class PlayerManager {
         BValidate.notNull(uuid);
         BValidate.notNull(key);
 
-        get(uuid).ifPresent(bPlayer -> bPlayer.keys().put(key, getKeyNumberWithdrawable(uuid, key) - amount));
-        save();
+        get(uuid).ifPresentOrElse(bPlayer -> {
+            bPlayer.keys().put(key, getKeyNumberWithdrawable(uuid, key) - amount);
+            dirtyPlayers.add(uuid);
+            commit(uuid, key, -amount);
+        }, () -> commitOffline(uuid, key, -amount));
     }
 
     public static void addKey(@Nonnull UUID uuid, @Nonnull Key key, int amount) {
         BValidate.notNull(uuid);
         BValidate.notNull(key);
 
-        get(uuid).ifPresent(bPlayer -> bPlayer.keys().put(key, getKeyNumberWithdrawable(uuid, key) + amount));
-        save();
+        get(uuid).ifPresentOrElse(bPlayer -> {
+            bPlayer.keys().put(key, getKeyNumberWithdrawable(uuid, key) + amount);
+            dirtyPlayers.add(uuid);
+            commit(uuid, key, amount);
+        }, () -> commitOffline(uuid, key, amount));
+    }
+
+    /**
+     * Applies a key balance change to a player not loaded, directly on the storage
+     * The change is applied off the main thread, one at a time, and given to the player instead if he was loaded meanwhile.
+     *
+     * @param uuid  the uuid
+     * @param key   the key
+     * @param delta the balance change
+     */
+    private static void commitOffline(@Nonnull UUID uuid, @Nonnull Key key, int delta) {
+        BValidate.notNull(uuid);
+        BValidate.notNull(key);
+
+        Runnable change = () -> {
+            synchronized (offlineLock) {
+
+                //If the player was loaded meanwhile, the change goes to him
+                if (isRegistered(uuid)) {
+                    BScheduler.syncScheduler().run(() -> addKey(uuid, key, delta));
+                    return;
+                }
+
+                int balance = storage.load(uuid).getOrDefault(key.name().get(), 0) + delta;
+
+                if (journal != null) {
+                    journal.append(uuid, key.name().get(), delta, balance);
+                }
+
+                storage.save(uuid, Map.of(key.name().get(), balance), Collections.emptySet());
+                storage.flush();
+                storage.unload(uuid);
+            }
+        };
+
+        //Once unregistered, the change is applied immediately
+        if (offlineExecutor == null) {
+            change.run();
+            return;
+        }
+
+        offlineExecutor.execute(change);
+    }
+
+    /**
+     * Makes a key balance change durable
+     * With the journal, the change is appended to it and saved by the next compaction, otherwise the player is saved.
+     *
+     * @param uuid  the uuid
+     * @param key   the key
+     * @param delta the balance change
+     */
+    private static void commit(@Nonnull UUID uuid, @Nonnull Key key, int delta) {
+        BValidate.notNull(uuid);
+        BValidate.notNull(key);
+
+        if (journal == null) {
+            save();
+            return;
+        }
+
+        journal.append(uuid, key.name().get(), delta, getKeyNumberWithdrawable(uuid, key));
+    }
+
+    /**
+     * Gets the pity counter of a player for a crate
+     *
+     * @param uuid  the uuid
+     * @param crate the crate
+     * @return the number of opens since the last rare prize
+     */
+    public static int getPity(@Nonnull UUID uuid, @Nonnull Crate crate) {
+        BValidate.notNull(uuid);
+        BValidate.notNull(crate);
+
+        BPlayer bPlayer = players.get(uuid);
+        return bPlayer == null ? 0 : bPlayer.pity().get(crate.name().get());
+    }
+
+    /**
+     * Sets the pity counter of a player for a crate
+     * With the journal, the change is appended to it, otherwise it is saved with the key change of the open.
+     *
+     * @param uuid  the uuid
+     * @param crate the crate
+     * @param count the number of opens since the last rare prize
+     */
+    public static void setPity(@Nonnull UUID uuid, @Nonnull Crate crate, int count) {
+        BValidate.notNull(uuid);
+        BValidate.notNull(crate);
+
+        BPlayer bPlayer = players.get(uuid);
+
+        //If the player is not loaded or the counter does not change, no need to continue
+        if (bPlayer == null || bPlayer.pity().get(crate.name().get()) == count) {
+            return;
+        }
+
+        int delta = count - bPlayer.pity().get(crate.name().get());
+        bPlayer.pity().set(crate.name().get(), count);
+        dirtyPlayers.add(uuid);
+
+        if (journal != null) {
+            journal.append(uuid, PITY + crate.name().get(), delta, count);
+        }
     }
 
     public static void withdrawKey(@Nonnull UUID uuid, @Nonnull Key key, int amount) {
@@ -251,7 +469,6 @@ public class PlayerManager {
         //Withdraws key
         Optional.ofNullable(Bukkit.getPlayer(uuid)).ifPresent(player -> IntStream.range(0, amount).forEach(i -> player.getInventory().addItem(key.item().get().clone())));
         removeKey(uuid, key, amount);
-        save();
     }
 
     public static void depositKey(@Nonnull UUID uuid, @Nonnull Key key, int amount) {
@@ -262,47 +479,122 @@ public class PlayerManager {
         Optional.ofNullable(Bukkit.getPlayer(uuid)).ifPresent(player ->
                 player.getInventory().removeItem(new BItemBuilder(key.item().get()).amount(amount).build()));
         addKey(uuid, key, amount);
-        save();
     }
 
     /**
      * Reloads all players
+     * The pending changes are waited off the main thread, then the players are loaded again on the main thread.
+     *
+     * @param callback the task run on the main thread once reloaded
      */
-    public static void reload() {
-        players.clear();
-        configuration.initialize();
+    public static void reload(@Nonnull Runnable callback) {
+        BValidate.notNull(callback);
 
-        load();
+        //Writes the pending changes before reading the storage again
+        save();
+        BSettingWriter.flush();
+
+        BScheduler.asyncScheduler().run(() -> {
+            storage.sync();
+
+            BScheduler.syncScheduler().run(() -> {
+
+                //Players changed while waiting, waits their changes too
+                if (!dirtyPlayers.isEmpty()) {
+                    reload(callback);
+                    return;
+                }
+
+                players.clear();
+                dirtyPlayers.clear();
+                unloadSchedulers.values().forEach(BScheduler::stop);
+                unloadSchedulers.clear();
+                storage.reload();
+
+                load();
+                callback.run();
+            });
+        });
     }
 
     /**
-     * Loads all players
+     * Loads the online players
+     * The other players are loaded when they log in
      */
     public static void load() {
+        Bukkit.getOnlinePlayers().forEach(player -> create(player.getUniqueId()));
+    }
 
-        //Loads all players
-        configuration.getKeys().forEach(player -> {
-            Map<Key, Integer> keys = configuration.getConfigurationSection(player).stream()
-                    .map(key -> KeyManager.get(key).orElse(null))
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toMap(key -> key, key -> configuration.getInt(player + "." + key.name().get())));
+    /**
+     * Saves all players changed since the last save
+     */
+    public static void save() {
 
-            players.put(UUID.fromString(player), new BPlayer(UUID.fromString(player), keys));
+        //Saves only the changed keys of the changed players, skipping those marked without any recorded change
+        dirtyPlayers.removeIf(uuid -> {
+            get(uuid).filter(BPlayer::isDirty).ifPresent(bPlayer -> {
+                Map<String, Integer> changed = new HashMap<>();
+                Set<String> removed = new HashSet<>();
+
+                bPlayer.keys().pollDirty().forEach(key -> bPlayer.keys().get(key).ifPresentOrElse(
+                        amount -> changed.put(key.name().get(), amount),
+                        () -> removed.add(key.name().get())));
+
+                //An empty pity counter is not stored
+                bPlayer.pity().pollDirty((crate, count) -> {
+                    if (count > 0) {
+                        changed.put(PITY + crate, count);
+                    } else {
+                        removed.add(PITY + crate);
+                    }
+                });
+                storage.save(uuid, changed, removed);
+            });
+            return true;
         });
+
+        storage.flush();
     }
 
     /**
-     * Saves all players
+     * Applies the journal replay on the storage
+     *
+     * @param replays the replayed changes by player
      */
-    public static void save() {
-        configuration.clear();
+    private static void replay(@Nonnull Map<UUID, PlayerJournal.Replay> replays) {
+        BValidate.notNull(replays);
 
-        //Saves all players
-        players.values().forEach(bPlayer -> KeyManager.stream().forEach(key ->
-                configuration.set(bPlayer.uuid().get() + "." + key.name().get(), getKeyNumberWithdrawable(bPlayer.uuid().get(), key))
-        ));
+        //If there is nothing to replay, no need to continue
+        if (replays.isEmpty()) {
+            return;
+        }
 
-        configuration.save();
+        replays.forEach((uuid, replay) -> {
+            if (replay.isDeleted()) {
+                storage.delete(uuid);
+            }
+            storage.save(uuid, replay.getKeys(), Collections.emptySet());
+        });
+        storage.flush();
+
+        //Folds the replayed segments into the storage
+        BSettingWriter.flush();
+        journal.compact(journal.rotate(), storage::sync);
+    }
+
+    /**
+     * Compacts the journal
+     * The current segment is sealed, the changed players are saved, then the sealed segments are deleted once written by the storage.
+     */
+    public static void compact() {
+        if (journal == null) {
+            return;
+        }
+
+        long sealed = journal.rotate();
+        save();
+        BSettingWriter.flush();
+        journal.compact(sealed, storage::sync);
     }
 
 }
@@ -2,50 +2,78 @@ package fr.bobinho.bcrate.util.player.listener;
 
 import fr.bobinho.bcrate.api.entity.BEntity;
 import fr.bobinho.bcrate.api.event.BEvent;
+import fr.bobinho.bcrate.api.notification.BPlaceHolder;
+import fr.bobinho.bcrate.api.scheduler.BScheduler;
+import fr.bobinho.bcrate.util.claim.ClaimManager;
+import fr.bobinho.bcrate.util.claim.notification.ClaimNotification;
 import fr.bobinho.bcrate.util.crate.CrateManager;
 import fr.bobinho.bcrate.util.player.PlayerManager;
-import fr.bobinho.bcrate.util.prize.Prize;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerAttemptPickupItemEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
-import org.bukkit.inventory.ItemStack;
-
-import java.util.*;
 
 /**
  * Listener class for players
  */
 public class PlayerListener {
 
-    /**
-     * Fields
-     */
-    private static final Map<UUID, List<Prize>> unrecoveredPrizes = new HashMap<>();
-
     /**
      * Registers player listeners
      */
     public static void registerEvents() {
+        onPreLogin();
         onJoin();
         onQuit();
         onPick();
         onInteractWithInventory();
     }
 
+    /**
+     * Listens player pre login, to load the player off the main thread
+     * The player is unloaded after the unload delay unless he joins meanwhile, and as soon as his login is denied.
+     */
+    private static void onPreLogin() {
+        BEvent.registerEvent(AsyncPlayerPreLoginEvent.class, EventPriority.MONITOR)
+                .filter(event -> event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED)
+                .consume(event -> {
+                    PlayerManager.create(event.getUniqueId());
+                    BScheduler.syncScheduler().run(() -> {
+                        if (Bukkit.getPlayer(event.getUniqueId()) == null) {
+                            PlayerManager.scheduleUnload(event.getUniqueId());
+                        }
+                    });
+                });
+        BEvent.registerEvent(PlayerLoginEvent.class, EventPriority.MONITOR)
+                .filter(event -> event.getResult() != PlayerLoginEvent.Result.ALLOWED)
+                .consume(event -> {
+                    PlayerManager.cancelUnload(event.getPlayer().getUniqueId());
+                    PlayerManager.unload(event.getPlayer().getUniqueId());
+                });
+    }
+
     /**
      * Listens player join
      */
     private static void onJoin() {
         BEvent.registerEvent(PlayerJoinEvent.class)
-                .filter(event -> !PlayerManager.isRegistered(event.getPlayer().getUniqueId()))
                 .consume(event -> {
-                    Optional.ofNullable(unrecoveredPrizes.get(event.getPlayer().getUniqueId())).ifPresent(prizes -> {
-                        event.getPlayer().getInventory().addItem(prizes.stream().map(prize -> prize.item().get()).toArray(ItemStack[]::new));
-                        unrecoveredPrizes.remove(event.getPlayer().getUniqueId());
-                    });
+                    PlayerManager.cancelUnload(event.getPlayer().getUniqueId());
+
+                    //Loads the player if the pre login did not
                     PlayerManager.create(event.getPlayer().getUniqueId());
+
                     CrateManager.stream().forEach(crate -> crate.structure().stream().forEach(BEntity::render));
+
+                    //Reminds the prizes waiting to be claimed
+                    long claimable = ClaimManager.count(event.getPlayer().getUniqueId());
+                    if (claimable > 0) {
+                        event.getPlayer().sendMessage(ClaimNotification.CLAIM_PENDING.getNotification(new BPlaceHolder("%amount%", String.valueOf(claimable))));
+                    }
                 });
     }
 
@@ -56,12 +84,8 @@ public class PlayerListener {
         BEvent.registerEvent(PlayerQuitEvent.class)
                 .filter(event -> PlayerManager.isRegistered(event.getPlayer().getUniqueId()))
                 .consume(event -> {
-                    CrateManager.stream()
-                            .filter(crate -> crate.metadata().has("open") || crate.metadata().has("waitOpen") && crate.metadata().getNonNull("player").equals(event.getPlayer()))
-                            .findFirst()
-                            .ifPresent(crate -> unrecoveredPrizes.put(event.getPlayer().getUniqueId(), crate.metadata().getNonNull("prizes")));
-                    CrateManager.stream().forEach(crate -> crate.structure().stream()
-                            .forEach(structure -> structure.getRenderer().removeShownViewers(event.getPlayer().getUniqueId())));
+                    CrateManager.stream().forEach(crate -> crate.renderer().get().removeShownViewers(event.getPlayer().getUniqueId()));
+                    PlayerManager.scheduleUnload(event.getPlayer().getUniqueId());
                 });
     }
 
@@ -0,0 +1,422 @@
+package fr.bobinho.bcrate.util.player.storage;
+
+import fr.bobinho.bcrate.BCrateCore;
+import fr.bobinho.bcrate.api.validate.BValidate;
+
+import javax.annotation.Nonnull;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Class representing the append-only journal of the player key balances
+ * <p>
+ * Each balance change is appended to an in-memory buffer, then written and synced to the current segment
+ * by a dedicated thread every sync interval. Records store the balance after the change, so replaying
+ * a segment twice gives the same result. Segments are deleted once their changes are in the storage.
+ */
+public final class PlayerJournal {
+
+    /**
+     * Record types
+     */
+    private static final byte BALANCE = 0;
+    private static final byte DELETE = 1;
+
+    /**
+     * Fields
+     */
+    private final Object lock = new Object();
+    private final File directory = new File(BCrateCore.getInstance().getDataFolder(), "journal");
+    private final List<Segment> segments = new ArrayList<>();
+    private final int syncInterval;
+    private ScheduledExecutorService executor;
+    private FileChannel channel;
+    private long channelSequence = -1;
+    private long sequence;
+
+    /**
+     * Class representing the pending records of a segment
+     */
+    private static final class Segment {
+
+        /**
+         * Fields
+         */
+        private final long sequence;
+        private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+
+        /**
+         * Creates a new segment
+         *
+         * @param sequence the sequence
+         */
+        private Segment(long sequence) {
+            this.sequence = sequence;
+        }
+
+    }
+
+    /**
+     * Class representing the replayed changes of a player
+     */
+    public static final class Replay {
+
+        /**
+         * Fields
+         */
+        private final Map<String, Integer> keys = new HashMap<>();
+        private boolean deleted;
+
+        /**
+         * Gets the replayed key balances
+         *
+         * @return the replayed key balances
+         */
+        public @Nonnull Map<String, Integer> getKeys() {
+            return keys;
+        }
+
+        /**
+         * Checks if the player was deleted before the replayed key balances
+         *
+         * @return true if the player was deleted, false otherwise
+         */
+        public boolean isDeleted() {
+            return deleted;
+        }
+
+    }
+
+    /**
+     * Creates a new player journal
+     *
+     * @param syncInterval the sync interval in milliseconds
+     */
+    public PlayerJournal(int syncInterval) {
+        BValidate.isTrue(syncInterval > 0);
+
+        this.syncInterval = syncInterval;
+    }
+
+    /**
+     * Opens the journal and replays the existing segments
+     *
+     * @return the replayed changes by player
+     */
+    public @Nonnull Map<UUID, Replay> open() {
+        Map<UUID, Replay> replays = new LinkedHashMap<>();
+        List<Long> sequences = getSequences();
+
+        //Replays all segments in order
+        sequences.forEach(segment -> replay(segment, replays));
+        sequence = sequences.isEmpty() ? 0 : sequences.get(sequences.size() - 1) + 1;
+        segments.add(new Segment(sequence));
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BCrate-Journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::drain, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+
+        if (!replays.isEmpty()) {
+            BCrateCore.getBLogger().info("Successfully replayed " + replays.size() + " journaled players.");
+        }
+
+        return replays;
+    }
+
+    /**
+     * Closes the journal, writing all pending records
+     *
+     * @param purge true to delete all segments, only if their changes are all written by the storage
+     */
+    public void close(boolean purge) {
+        if (executor == null) {
+            return;
+        }
+
+        executor.execute(() -> {
+            drain();
+            closeChannel();
+
+            if (purge) {
+                delete(Long.MAX_VALUE);
+            }
+        });
+
+        //Waits the last writes
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                BCrateCore.getBLogger().error("Some journal records could not be written in time!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        executor = null;
+    }
+
+    /**
+     * Appends a balance change
+     *
+     * @param uuid    the uuid
+     * @param key     the key name
+     * @param delta   the balance change
+     * @param balance the balance after the change
+     */
+    public void append(@Nonnull UUID uuid, @Nonnull String key, int delta, int balance) {
+        BValidate.notNull(uuid);
+        BValidate.notNull(key);
+
+        byte[] name = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(1 + 16 + 2 + name.length + 8);
+        record.put(BALANCE).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+        record.putShort((short) name.length).put(name).putInt(delta).putInt(balance);
+
+        append(record.array());
+    }
+
+    /**
+     * Appends a player deletion
+     *
+     * @param uuid the uuid
+     */
+    public void appendDelete(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+
+        ByteBuffer record = ByteBuffer.allocate(1 + 16);
+        record.put(DELETE).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+
+        append(record.array());
+    }
+
+    /**
+     * Appends a record framed by its length and checksum
+     *
+     * @param record the record
+     */
+    private void append(@Nonnull byte[] record) {
+        BValidate.notNull(record);
+
+        CRC32 crc = new CRC32();
+        crc.update(record);
+
+        ByteBuffer frame = ByteBuffer.allocate(4 + record.length + 4);
+        frame.putInt(record.length).put(record).putInt((int) crc.getValue());
+
+        synchronized (lock) {
+            segments.get(segments.size() - 1).records.writeBytes(frame.array());
+        }
+    }
+
+    /**
+     * Seals the current segment, the next records are appended to a new one
+     *
+     * @return the sequence of the sealed segment
+     */
+    public long rotate() {
+        synchronized (lock) {
+            segments.add(new Segment(++sequence));
+            return sequence - 1;
+        }
+    }
+
+    /**
+     * Deletes the sealed segments once their changes are written by the storage
+     * The segments are kept if a storage write failed, to be replayed on the next start.
+     *
+     * @param sealed  the sequence of the last sealed segment
+     * @param barrier the task waiting for the storage writes, true if they all succeeded
+     */
+    public void compact(long sealed, @Nonnull BooleanSupplier barrier) {
+        BValidate.notNull(barrier);
+
+        if (executor == null) {
+            return;
+        }
+
+        executor.execute(() -> {
+            drain();
+
+            //If the storage could not write the changes, no need to continue
+            if (!barrier.getAsBoolean()) {
+                BCrateCore.getBLogger().warn("Kept the key journal segments, the storage could not write all changes.");
+                return;
+            }
+
+            delete(sealed);
+        });
+    }
+
+    /**
+     * Writes and syncs the pending records, on the journal thread
+     */
+    private void drain() {
+        List<Segment> pending;
+
+        synchronized (lock) {
+            pending = new ArrayList<>(segments);
+            segments.clear();
+            segments.add(new Segment(sequence));
+        }
+
+        try {
+            for (Segment segment : pending) {
+
+                //Switches to the segment file
+                if (segment.sequence != channelSequence) {
+                    closeChannel();
+                    Files.createDirectories(directory.toPath());
+                    channel = FileChannel.open(getFile(segment.sequence).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    channelSequence = segment.sequence;
+                }
+
+                ByteBuffer records = ByteBuffer.wrap(segment.records.toByteArray());
+                while (records.hasRemaining()) {
+                    channel.write(records);
+                }
+            }
+
+            //Syncs all records written since the last drain at once
+            if (channel != null) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            BCrateCore.getBLogger().error("Could not write the key journal!", e);
+        }
+    }
+
+    /**
+     * Closes the current segment file
+     */
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            BCrateCore.getBLogger().error("Could not close the key journal!", e);
+        }
+
+        channel = null;
+        channelSequence = -1;
+    }
+
+    /**
+     * Deletes the segments up to a sequence
+     *
+     * @param sealed the sequence of the last segment to delete
+     */
+    private void delete(long sealed) {
+        getSequences().stream()
+                .filter(segment -> segment <= sealed && segment != channelSequence)
+                .forEach(segment -> {
+                    try {
+                        Files.deleteIfExists(getFile(segment).toPath());
+                    } catch (IOException e) {
+                        BCrateCore.getBLogger().error("Could not delete the key journal segment " + segment + "!", e);
+                    }
+                });
+    }
+
+    /**
+     * Replays a segment
+     * The replay stops at the first incomplete or corrupted record, which can only be the last one written before a crash.
+     *
+     * @param segment the segment sequence
+     * @param replays the replayed changes by player
+     */
+    private void replay(long segment, @Nonnull Map<UUID, Replay> replays) {
+        BValidate.notNull(replays);
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(getFile(segment).toPath())))) {
+            while (true) {
+                int length = input.readInt();
+
+                if (length <= 0 || length > 1 + 16 + 2 + 0xFFFF + 8) {
+                    throw new EOFException();
+                }
+
+                byte[] data = new byte[length];
+                input.readFully(data);
+
+                CRC32 crc = new CRC32();
+                crc.update(data);
+
+                if ((int) crc.getValue() != input.readInt()) {
+                    throw new EOFException();
+                }
+
+                ByteBuffer record = ByteBuffer.wrap(data);
+                byte type = record.get();
+                Replay replay = replays.computeIfAbsent(new UUID(record.getLong(), record.getLong()), uuid -> new Replay());
+
+                if (type == DELETE) {
+                    replay.keys.clear();
+                    replay.deleted = true;
+                    continue;
+                }
+
+                byte[] name = new byte[record.getShort() & 0xFFFF];
+                record.get(name);
+                record.getInt();
+                replay.keys.put(new String(name, StandardCharsets.UTF_8), record.getInt());
+            }
+        } catch (EOFException e) {
+
+            //End of the segment, or torn record at its end
+        } catch (IOException e) {
+            BCrateCore.getBLogger().error("Could not replay the key journal segment " + segment + "!", e);
+        }
+    }
+
+    /**
+     * Gets the sorted sequences of the stored segments
+     *
+     * @return the sorted sequences of the stored segments
+     */
+    private @Nonnull List<Long> getSequences() {
+        if (!directory.isDirectory()) {
+            return Collections.emptyList();
+        }
+
+        try (Stream<Path> files = Files.list(directory.toPath())) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.matches("\\d+\\.log"))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - 4)))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            BCrateCore.getBLogger().error("Could not list the key journal segments!", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Gets the file of a segment
+     *
+     * @param segment the segment sequence
+     * @return the file of the segment
+     */
+    private @Nonnull File getFile(long segment) {
+        return new File(directory, String.format("%016d.log", segment));
+    }
+
+}
@@ -0,0 +1,87 @@
+package fr.bobinho.bcrate.util.player.storage;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Interface representing a player key balances storage
+ * <p>
+ * Balances are exchanged by key name, so the storage does not depend on the registered keys.
+ */
+public interface PlayerStorage {
+
+    /**
+     * Opens the storage
+     *
+     * @throws IllegalStateException if the storage could not be opened
+     */
+    void open();
+
+    /**
+     * Closes the storage, writing all pending changes
+     *
+     * @return true if all changes are written or handed to the setting writer, false otherwise
+     */
+    boolean close();
+
+    /**
+     * Loads the key balances of a player
+     * May be called from any thread.
+     *
+     * @param uuid the uuid
+     * @return the key balances of the player
+     */
+    @Nonnull Map<String, Integer> load(@Nonnull UUID uuid);
+
+    /**
+     * Loads the key balances of all stored players
+     *
+     * @return the key balances of all stored players
+     */
+    @Nonnull Map<UUID, Map<String, Integer>> loadAll();
+
+    /**
+     * Saves the changed key balances of a player
+     * The changes are only guaranteed to be written after the next flush.
+     *
+     * @param uuid    the uuid
+     * @param changed the changed key balances
+     * @param removed the removed key names
+     */
+    void save(@Nonnull UUID uuid, @Nonnull Map<String, Integer> changed, @Nonnull Set<String> removed);
+
+    /**
+     * Releases the cached data of a player, once its changes are written
+     *
+     * @param uuid the uuid
+     */
+    void unload(@Nonnull UUID uuid);
+
+    /**
+     * Deletes a player
+     *
+     * @param uuid the uuid
+     */
+    void delete(@Nonnull UUID uuid);
+
+    /**
+     * Writes all saved changes
+     */
+    void flush();
+
+    /**
+     * Waits until all flushed changes are written
+     * May be called from any thread except the main one.
+     *
+     * @return true if all flushed changes are written, false otherwise
+     */
+    boolean sync();
+
+    /**
+     * Reloads the storage, discarding the cached data
+     */
+    void reload();
+
+}
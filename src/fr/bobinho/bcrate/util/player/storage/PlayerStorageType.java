@@ -0,0 +1,56 @@
+package fr.bobinho.bcrate.util.player.storage;
+
+import fr.bobinho.bcrate.api.validate.BValidate;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Enum representing the player storage types
+ */
+public enum PlayerStorageType {
+
+    YAML(YamlPlayerStorage::new),
+    SHARDED(ShardedPlayerStorage::new),
+    SQL(SqlPlayerStorage::new);
+
+    /**
+     * Fields
+     */
+    private final Supplier<PlayerStorage> factory;
+
+    /**
+     * Creates a new player storage type
+     *
+     * @param factory the storage factory
+     */
+    PlayerStorageType(@Nonnull Supplier<PlayerStorage> factory) {
+        BValidate.notNull(factory);
+
+        this.factory = factory;
+    }
+
+    /**
+     * Creates a new storage of this type
+     *
+     * @return the created storage
+     */
+    public @Nonnull PlayerStorage create() {
+        return factory.get();
+    }
+
+    /**
+     * Gets an optional player storage type by name
+     *
+     * @param name the name
+     * @return the optional player storage type
+     */
+    public static @Nonnull Optional<PlayerStorageType> get(@Nonnull String name) {
+        BValidate.notNull(name);
+
+        return Arrays.stream(values()).filter(type -> type.name().equalsIgnoreCase(name)).findFirst();
+    }
+
+}
@@ -0,0 +1,159 @@
+package fr.bobinho.bcrate.util.player.storage;
+
+import fr.bobinho.bcrate.api.setting.BSetting;
+import fr.bobinho.bcrate.api.setting.BSettingWriter;
+import fr.bobinho.bcrate.api.setting.BShardedSetting;
+import fr.bobinho.bcrate.api.validate.BValidate;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+
+/**
+ * Class representing the player storage in one setting file per player
+ * <p>
+ * Accesses are synchronized, since players are loaded off the main thread.
+ * Unloaded shards are kept until their last save is written, so they are never read again from a stale file.
+ */
+public final class ShardedPlayerStorage implements PlayerStorage {
+
+    /**
+     * Fields
+     */
+    private final BShardedSetting configuration = new BShardedSetting("player");
+    private final Set<BSetting> changed = new LinkedHashSet<>();
+    private final Set<String> unloaded = new HashSet<>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void open() {
+
+        //Migrates the players from the single setting file if needed
+        configuration.migrate("player");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean close() {
+        flush();
+        configuration.unloadAll();
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized @Nonnull Map<String, Integer> load(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+
+        unloaded.remove(uuid.toString());
+
+        //Only reads the player shard if it exists, to avoid creating empty files
+        if (!configuration.exists(uuid.toString())) {
+            return new HashMap<>();
+        }
+
+        BSetting setting = configuration.get(uuid.toString());
+        Map<String, Integer> keys = new HashMap<>();
+        setting.getKeys().forEach(key -> setting.isInt(key).ifPresent(amount -> keys.put(key, amount)));
+
+        return keys;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized @Nonnull Map<UUID, Map<String, Integer>> loadAll() {
+        Map<UUID, Map<String, Integer>> players = new HashMap<>();
+        configuration.getShards().forEach(player -> players.put(UUID.fromString(player), load(UUID.fromString(player))));
+
+        return players;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void save(@Nonnull UUID uuid, @Nonnull Map<String, Integer> changed, @Nonnull Set<String> removed) {
+        BValidate.notNull(uuid);
+        BValidate.notNull(changed);
+        BValidate.notNull(removed);
+
+        BSetting setting = configuration.get(uuid.toString());
+
+        //Changes the player at once, the writer may serialize the shard meanwhile
+        synchronized (setting) {
+            changed.forEach(setting::set);
+            removed.forEach(setting::unset);
+        }
+        this.changed.add(setting);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void unload(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+
+        unloaded.add(uuid.toString());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void delete(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+
+        changed.removeIf(setting -> setting.getFileName().endsWith("/" + uuid));
+        unloaded.remove(uuid.toString());
+        configuration.delete(uuid.toString());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void flush() {
+
+        //Writes only the touched shards
+        changed.forEach(BSetting::save);
+        changed.clear();
+
+        //Releases the unloaded shards whose saves are written
+        unloaded.removeIf(shard -> {
+            if (configuration.isLoaded(shard) && BSettingWriter.isPending(configuration.get(shard))) {
+                return false;
+            }
+
+            configuration.unload(shard);
+            return true;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean sync() {
+        return BSettingWriter.sync();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void reload() {
+        changed.clear();
+        unloaded.clear();
+        configuration.unloadAll();
+    }
+
+}
@@ -0,0 +1,374 @@
+package fr.bobinho.bcrate.util.player.storage;
+
+import fr.bobinho.bcrate.BCrateCore;
+import fr.bobinho.bcrate.api.validate.BValidate;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Class representing the player storage in an embedded SQLite database
+ * <p>
+ * Changes are merged in memory and written by a dedicated thread with prepared batched statements,
+ * in a single transaction per flush.
+ */
+public final class SqlPlayerStorage implements PlayerStorage {
+
+    /**
+     * Statements
+     */
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS player_keys (uuid CHAR(36) NOT NULL, key_name VARCHAR(64) NOT NULL, amount INTEGER NOT NULL, PRIMARY KEY (uuid, key_name))";
+    private static final String SELECT_PLAYER = "SELECT key_name, amount FROM player_keys WHERE uuid = ?";
+    private static final String SELECT_ALL = "SELECT uuid, key_name, amount FROM player_keys";
+    private static final String UPSERT_KEY = "INSERT INTO player_keys (uuid, key_name, amount) VALUES (?, ?, ?) ON CONFLICT(uuid, key_name) DO UPDATE SET amount = excluded.amount";
+    private static final String DELETE_KEY = "DELETE FROM player_keys WHERE uuid = ? AND key_name = ?";
+    private static final String DELETE_PLAYER = "DELETE FROM player_keys WHERE uuid = ?";
+
+    /**
+     * Fields
+     */
+    private final Object lock = new Object();
+    private final Map<UUID, Map<String, Integer>> upserts = new LinkedHashMap<>();
+    private final Map<UUID, Set<String>> removals = new LinkedHashMap<>();
+    private final Set<UUID> deletions = new LinkedHashSet<>();
+    private ExecutorService executor;
+    private Connection connection;
+    private volatile boolean failed;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void open() {
+        File file = new File(BCrateCore.getInstance().getDataFolder(), "player.db");
+
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BCrate-Storage");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        //Opens the connection on the storage thread, which is the only one using it
+        call(() -> {
+            Class.forName("org.sqlite.JDBC");
+            Files.createDirectories(file.getParentFile().toPath());
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                statement.execute(CREATE_TABLE);
+            }
+            return null;
+        });
+
+        //If the database could not be opened, no need to continue
+        if (connection == null) {
+            executor.shutdownNow();
+            executor = null;
+            throw new IllegalStateException("Could not open the player database!");
+        }
+
+        migrate();
+        BCrateCore.getBLogger().info("Successfully loaded player database.");
+    }
+
+    /**
+     * Migrates the players from the single setting file if needed
+     */
+    private void migrate() {
+        File file = new File(BCrateCore.getInstance().getDataFolder(), "player.yml");
+
+        //If there is nothing to migrate, no need to continue
+        if (!file.exists()) {
+            return;
+        }
+
+        YamlPlayerStorage source = new YamlPlayerStorage();
+        source.open();
+
+        Map<UUID, Map<String, Integer>> players = source.loadAll();
+        players.forEach((uuid, keys) -> save(uuid, keys, Collections.emptySet()));
+        flush();
+
+        //Waits the migration before renaming the file, the file is kept if the migration is not written
+        if (!sync()) {
+            BCrateCore.getBLogger().error("Could not migrate the player entries, the player.yml file is kept!");
+            return;
+        }
+
+        try {
+            Files.move(file.toPath(), new File(file.getParentFile(), "player.yml.migrated").toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            BCrateCore.getBLogger().error("Could not rename the player.yml file!", e);
+        }
+
+        BCrateCore.getBLogger().info("Successfully migrated " + players.size() + " player entries.");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean close() {
+        if (executor == null) {
+            return false;
+        }
+
+        flush();
+        executor.execute(() -> {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                BCrateCore.getBLogger().error("Could not close the player database!", e);
+            }
+        });
+
+        //Waits the last writes
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                BCrateCore.getBLogger().error("Some players could not be written in time!");
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            executor = null;
+        }
+
+        return !failed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public @Nonnull Map<String, Integer> load(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+
+        //Reads on the storage thread, after the flushed writes
+        Map<String, Integer> keys = Optional.ofNullable(call(() -> {
+            Map<String, Integer> stored = new HashMap<>();
+
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_PLAYER)) {
+                statement.setString(1, uuid.toString());
+
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        stored.put(result.getString(1), result.getInt(2));
+                    }
+                }
+            }
+            return stored;
+        })).orElseGet(HashMap::new);
+
+        applyPending(uuid, keys);
+
+        return keys;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public @Nonnull Map<UUID, Map<String, Integer>> loadAll() {
+        Map<UUID, Map<String, Integer>> players = Optional.ofNullable(call(() -> {
+            Map<UUID, Map<String, Integer>> stored = new HashMap<>();
+
+            try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(SELECT_ALL)) {
+                while (result.next()) {
+                    stored.computeIfAbsent(UUID.fromString(result.getString(1)), uuid -> new HashMap<>()).put(result.getString(2), result.getInt(3));
+                }
+            }
+            return stored;
+        })).orElseGet(HashMap::new);
+
+        synchronized (lock) {
+            upserts.keySet().forEach(uuid -> players.computeIfAbsent(uuid, key -> new HashMap<>()));
+            players.forEach(this::applyPending);
+            players.keySet().removeIf(uuid -> deletions.contains(uuid) && !upserts.containsKey(uuid));
+        }
+
+        return players;
+    }
+
+    /**
+     * Applies the pending changes of a player to loaded key balances
+     *
+     * @param uuid the uuid
+     * @param keys the loaded key balances
+     */
+    private void applyPending(@Nonnull UUID uuid, @Nonnull Map<String, Integer> keys) {
+        BValidate.notNull(uuid);
+        BValidate.notNull(keys);
+
+        synchronized (lock) {
+            if (deletions.contains(uuid)) {
+                keys.clear();
+            }
+            removals.getOrDefault(uuid, Collections.emptySet()).forEach(keys::remove);
+            keys.putAll(upserts.getOrDefault(uuid, Collections.emptyMap()));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(@Nonnull UUID uuid, @Nonnull Map<String, Integer> changed, @Nonnull Set<String> removed) {
+        BValidate.notNull(uuid);
+        BValidate.notNull(changed);
+        BValidate.notNull(removed);
+
+        //Merges the changes with the pending ones, keeping only the last state of each key
+        synchronized (lock) {
+            changed.forEach((key, amount) -> {
+                upserts.computeIfAbsent(uuid, player -> new HashMap<>()).put(key, amount);
+                Optional.ofNullable(removals.get(uuid)).ifPresent(keys -> keys.remove(key));
+            });
+            removed.forEach(key -> {
+                removals.computeIfAbsent(uuid, player -> new HashSet<>()).add(key);
+                Optional.ofNullable(upserts.get(uuid)).ifPresent(keys -> keys.remove(key));
+            });
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unload(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+
+        synchronized (lock) {
+            upserts.remove(uuid);
+            removals.remove(uuid);
+            deletions.add(uuid);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {
+        Map<UUID, Map<String, Integer>> upserts;
+        Map<UUID, Set<String>> removals;
+        Set<UUID> deletions;
+
+        synchronized (lock) {
+            if (this.upserts.isEmpty() && this.removals.isEmpty() && this.deletions.isEmpty()) {
+                return;
+            }
+
+            upserts = new LinkedHashMap<>(this.upserts);
+            removals = new LinkedHashMap<>(this.removals);
+            deletions = new LinkedHashSet<>(this.deletions);
+            this.upserts.clear();
+            this.removals.clear();
+            this.deletions.clear();
+        }
+
+        //Deletions first, so a player recreated after its deletion keeps its new keys
+        executor.execute(() -> {
+            try {
+                connection.setAutoCommit(false);
+
+                try (PreparedStatement deletePlayer = connection.prepareStatement(DELETE_PLAYER);
+                     PreparedStatement deleteKey = connection.prepareStatement(DELETE_KEY);
+                     PreparedStatement upsertKey = connection.prepareStatement(UPSERT_KEY)) {
+
+                    for (UUID uuid : deletions) {
+                        deletePlayer.setString(1, uuid.toString());
+                        deletePlayer.addBatch();
+                    }
+                    for (Map.Entry<UUID, Set<String>> entry : removals.entrySet()) {
+                        for (String key : entry.getValue()) {
+                            deleteKey.setString(1, entry.getKey().toString());
+                            deleteKey.setString(2, key);
+                            deleteKey.addBatch();
+                        }
+                    }
+                    for (Map.Entry<UUID, Map<String, Integer>> entry : upserts.entrySet()) {
+                        for (Map.Entry<String, Integer> key : entry.getValue().entrySet()) {
+                            upsertKey.setString(1, entry.getKey().toString());
+                            upsertKey.setString(2, key.getKey());
+                            upsertKey.setInt(3, key.getValue());
+                            upsertKey.addBatch();
+                        }
+                    }
+
+                    deletePlayer.executeBatch();
+                    deleteKey.executeBatch();
+                    upsertKey.executeBatch();
+                    connection.commit();
+                    failed = false;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                failed = true;
+                BCrateCore.getBLogger().error("Could not save the players to the database!", e);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean sync() {
+        return Boolean.TRUE.equals(call(() -> !failed));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reload() {
+
+        //The database is the source of truth, the pending changes are written before reading it again
+        flush();
+    }
+
+    /**
+     * Runs a task on the storage thread and waits for its result
+     *
+     * @param task the task
+     * @param <T>  the result type
+     * @return the result, null if the task failed
+     */
+    private <T> T call(@Nonnull Callable<T> task) {
+        BValidate.notNull(task);
+
+        try {
+            return executor.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            BCrateCore.getBLogger().error("Could not access the player database!", e.getCause() instanceof Exception exception ? exception : e);
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,137 @@
+package fr.bobinho.bcrate.util.player.storage;
+
+import fr.bobinho.bcrate.api.setting.BSetting;
+import fr.bobinho.bcrate.api.setting.BSettingWriter;
+import fr.bobinho.bcrate.api.validate.BValidate;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Class representing the player storage in a single setting file
+ * <p>
+ * Accesses are synchronized, since players are loaded off the main thread.
+ */
+public final class YamlPlayerStorage implements PlayerStorage {
+
+    /**
+     * Fields
+     */
+    private BSetting configuration;
+    private boolean changed;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void open() {
+        configuration = new BSetting("player");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean close() {
+        flush();
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized @Nonnull Map<String, Integer> load(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+
+        Map<String, Integer> keys = new HashMap<>();
+        configuration.getConfigurationSection(uuid.toString()).forEach(key ->
+                configuration.isInt(uuid + "." + key).ifPresent(amount -> keys.put(key, amount)));
+
+        return keys;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized @Nonnull Map<UUID, Map<String, Integer>> loadAll() {
+        Map<UUID, Map<String, Integer>> players = new HashMap<>();
+        configuration.getKeys().forEach(player -> players.put(UUID.fromString(player), load(UUID.fromString(player))));
+
+        return players;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void save(@Nonnull UUID uuid, @Nonnull Map<String, Integer> changed, @Nonnull Set<String> removed) {
+        BValidate.notNull(uuid);
+        BValidate.notNull(changed);
+        BValidate.notNull(removed);
+
+        //Changes the player at once, the writer may serialize the setting meanwhile
+        synchronized (configuration) {
+            changed.forEach((key, amount) -> configuration.set(uuid + "." + key, amount));
+            removed.forEach(key -> configuration.unset(uuid + "." + key));
+        }
+        this.changed = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unload(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void delete(@Nonnull UUID uuid) {
+        BValidate.notNull(uuid);
+
+        configuration.unset(uuid.toString());
+        changed = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void flush() {
+
+        //If nothing changed, no need to continue
+        if (!changed) {
+            return;
+        }
+
+        changed = false;
+        configuration.save();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean sync() {
+        return BSettingWriter.sync();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void reload() {
+        changed = false;
+        configuration.initialize();
+    }
+
+}
@@ -10,6 +10,7 @@ import fr.bobinho.bcrate.util.prize.ux.PrizeSkinMenu;
 import fr.bobinho.bcrate.util.tag.Tag;
 import fr.bobinho.bcrate.wrapper.MonoValuedAttribute;
 import fr.bobinho.bcrate.wrapper.MultiValuedAttribute;
+import fr.bobinho.bcrate.wrapper.OptionalMonoValuedAttribute;
 import fr.bobinho.bcrate.wrapper.ReadOnlyMonoValuedAttribute;
 import org.bukkit.Material;
 import org.bukkit.inventory.ItemStack;
@@ -31,6 +32,7 @@ public class Prize {
     private final MonoValuedAttribute<Integer> slot;
     private final MonoValuedAttribute<Double> chance;
     private final MonoValuedAttribute<Boolean> rarity;
+    private final OptionalMonoValuedAttribute<String> stock;
     private final MultiValuedAttribute<Tag> tags;
     private final ReadOnlyMonoValuedAttribute<PrizeEditMenu> editMenu;
     private final ReadOnlyMonoValuedAttribute<PrizeSkinMenu> skinMenu;
@@ -54,6 +56,7 @@ public class Prize {
         this.slot = new MonoValuedAttribute<>(slot);
         this.chance = new MonoValuedAttribute<>(chance);
         this.rarity = new MonoValuedAttribute<>(rarity);
+        this.stock = new OptionalMonoValuedAttribute<>();
         this.tags = new MultiValuedAttribute<>(tag);
         this.editMenu = new ReadOnlyMonoValuedAttribute<>(new PrizeEditMenu(this));
         this.skinMenu = new ReadOnlyMonoValuedAttribute<>(new PrizeSkinMenu(this));
@@ -115,6 +118,15 @@ public class Prize {
         return rarity;
     }
 
+    /**
+     * Gets the stock wrapper, the name of the stock pool of the prize if it is limited
+     *
+     * @return the stock wrapper
+     */
+    public @Nonnull OptionalMonoValuedAttribute<String> stock() {
+        return stock;
+    }
+
     /**
      * Gets the tag wrapper
      *
@@ -0,0 +1,34 @@
+package fr.bobinho.bcrate.util.prize;
+
+import fr.bobinho.bcrate.api.validate.BValidate;
+import org.bukkit.inventory.ItemStack;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Record representing a parsed prize, not yet built
+ * The tags are kept as names, they are resolved when the prize is built.
+ *
+ * @param slot   the slot
+ * @param item   the item
+ * @param skin   the skin
+ * @param chance the chance
+ * @param rarity the rarity
+ * @param tags   the tag names
+ * @param stock  the stock pool name, null if the prize is unlimited
+ */
+public record PrizeDefinition(int slot, @Nonnull ItemStack item, @Nonnull ItemStack skin, double chance, boolean rarity,
+                              @Nonnull List<String> tags, @Nullable String stock) {
+
+    /**
+     * Creates a new prize definition
+     */
+    public PrizeDefinition {
+        BValidate.notNull(item);
+        BValidate.notNull(skin);
+        BValidate.notNull(tags);
+    }
+
+}
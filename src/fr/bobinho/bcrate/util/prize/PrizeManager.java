@@ -2,13 +2,19 @@ package fr.bobinho.bcrate.util.prize;
 
 import fr.bobinho.bcrate.api.validate.BValidate;
 import fr.bobinho.bcrate.util.crate.Crate;
+import fr.bobinho.bcrate.util.crate.CrateManager;
 import fr.bobinho.bcrate.util.prize.listener.PrizeListener;
 import fr.bobinho.bcrate.util.tag.Tag;
+import fr.bobinho.bcrate.util.tag.TagManager;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.awt.geom.IllegalPathStateException;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Manager class for prizes
@@ -38,7 +44,51 @@ public class PrizeManager {
     public static @Nonnull Optional<Prize> get(@Nonnull Crate crate, int slot) {
         BValidate.notNull(crate);
 
-        return crate.prizes().stream().filter(prize -> prize.slot().get() == slot).findFirst();
+        return crate.prizes().get(slot);
+    }
+
+    /**
+     * Builds a parsed prize, with its menus
+     *
+     * @param definition the parsed prize
+     * @return the built prize
+     */
+    public static @Nonnull Prize build(@Nonnull PrizeDefinition definition) {
+        BValidate.notNull(definition);
+
+        List<Tag> tags = definition.tags().stream()
+                .map(tag -> TagManager.get(tag).orElseThrow(IllegalPathStateException::new))
+                .collect(Collectors.toList());
+
+        Prize prize = new Prize(definition.item(), definition.skin(), definition.slot(), definition.chance(), definition.rarity(), tags);
+        prize.stock().set(definition.stock());
+
+        return prize;
+    }
+
+    /**
+     * Updates a prize from its parsed version, keeping its menus
+     *
+     * @param prize      the prize
+     * @param definition the parsed prize
+     */
+    public static void update(@Nonnull Prize prize, @Nonnull PrizeDefinition definition) {
+        BValidate.notNull(prize);
+        BValidate.notNull(definition);
+
+        if (!prize.item().get().equals(definition.item())) {
+            prize.item().set(definition.item());
+        }
+        if (!prize.skin().get().equals(definition.skin())) {
+            prize.skin().set(definition.skin());
+        }
+        prize.chance().set(definition.chance());
+        prize.rarity().set(definition.rarity());
+        prize.stock().set(definition.stock());
+
+        //Resolves the tags again, they may have been reloaded
+        prize.tags().clear();
+        definition.tags().forEach(tag -> prize.tags().add(TagManager.get(tag).orElseThrow(IllegalPathStateException::new)));
     }
 
     /**
@@ -68,6 +118,9 @@ public class PrizeManager {
         BValidate.notNull(prize);
 
         prize.chance().set(chance);
+
+        //Compiles the prize table of the crate again on its next draw
+        CrateManager.stream().filter(crate -> crate.prizes().contains(prize)).forEach(Crate::invalidateSampler);
     }
 
     /**
@@ -79,6 +132,24 @@ public class PrizeManager {
         BValidate.notNull(prize);
 
         prize.rarity().set(!prize.rarity().get());
+
+        //Compiles the rare only table of the crate again on its next draw
+        CrateManager.stream().filter(crate -> crate.prizes().contains(prize)).forEach(Crate::invalidateSampler);
+    }
+
+    /**
+     * Changes the stock pool
+     *
+     * @param prize the prize
+     * @param stock the stock pool name, null to make the prize unlimited
+     */
+    public static void changeStock(@Nonnull Prize prize, @Nullable String stock) {
+        BValidate.notNull(prize);
+
+        prize.stock().set(stock);
+
+        //Compiles the prize table of the crate again on its next draw
+        CrateManager.stream().filter(crate -> crate.prizes().contains(prize)).forEach(Crate::invalidateSampler);
     }
 
     /**
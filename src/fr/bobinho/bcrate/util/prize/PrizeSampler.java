@@ -0,0 +1,412 @@
+package fr.bobinho.bcrate.util.prize;
+
+import fr.bobinho.bcrate.api.validate.BValidate;
+import fr.bobinho.bcrate.util.prize.stock.StockManager;
+import fr.bobinho.bcrate.util.prize.stock.StockPool;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Class representing the compiled prize table of a crate
+ * <p>
+ * The chances are compiled once into a Fenwick tree of the weights, each draw then costing O(log n).
+ * <p>
+ * As before, each prize also gets an equal share of one extra chance point, drawn when no chance matches.
+ * <p>
+ * Draws without replacement work on a copy of the tree, each draw and each removal of the drawn prize costing O(log n).
+ * <p>
+ * The rare prizes also get their own Fenwick tree, so a rare prize forced by the pity is drawn in O(log n) as well.
+ * <p>
+ * A prize whose stock is exhausted is removed from a copy of the live trees, published once updated, without compiling
+ * the table again. The draws never lock, and all go through the live tree, so a seed always draws the same prize
+ * from the same table and exhausted prizes, which the fingerprint covers.
+ */
+public final class PrizeSampler {
+
+    /**
+     * Fields
+     */
+    private final Prize[] prizes;
+    private final long fingerprint;
+    private final double[] weights;
+    private final int[] rarePositions;
+    private final int[] rareIndexes;
+    private volatile Live live;
+
+    /**
+     * Record representing the live trees, never modified once published
+     *
+     * @param tree      the Fenwick tree of the weights of the prizes which are not exhausted
+     * @param rareTree  the Fenwick tree of the weights of the rare prizes which are not exhausted
+     * @param exhausted the exhausted prizes
+     * @param total     the total weight of the prizes which are not exhausted
+     * @param rareTotal the total weight of the rare prizes which are not exhausted
+     * @param count     the number of exhausted prizes
+     * @param rareCount the number of rare prizes which are not exhausted
+     */
+    private record Live(@Nonnull double[] tree, @Nonnull double[] rareTree, @Nonnull boolean[] exhausted, double total, double rareTotal, int count, int rareCount) {
+    }
+
+    /**
+     * Compiles the prize table
+     *
+     * @param prizes the prizes
+     */
+    public PrizeSampler(@Nonnull List<Prize> prizes) {
+        BValidate.notNull(prizes);
+
+        int size = prizes.size();
+        this.prizes = prizes.toArray(Prize[]::new);
+        this.weights = prizes.stream().mapToDouble(prize -> Math.max(0, prize.chance().get()) + 1.0D / size).toArray();
+
+        //Identifies the table by its slots, chances and rarities, so a replayed draw knows if it changed since
+        long fingerprint = size;
+        for (Prize prize : this.prizes) {
+            fingerprint = fingerprint * 31 + prize.slot().get();
+            fingerprint = fingerprint * 31 + Double.doubleToLongBits(prize.chance().get());
+            fingerprint = fingerprint * 31 + (prize.rarity().get() ? 1 : 0);
+        }
+        this.fingerprint = fingerprint;
+
+        //Maps each rare prize to its position in the rare tree
+        this.rareIndexes = IntStream.range(0, size).filter(i -> this.prizes[i].rarity().get()).toArray();
+        this.rarePositions = new int[size];
+        Arrays.fill(rarePositions, -1);
+        for (int position = 0; position < rareIndexes.length; position++) {
+            rarePositions[rareIndexes[position]] = position;
+        }
+
+        double[] rareWeights = new double[rareIndexes.length];
+        double total = 0;
+        double rareTotal = 0;
+        for (int i = 0; i < size; i++) {
+            total = total + weights[i];
+            if (rarePositions[i] >= 0) {
+                rareWeights[rarePositions[i]] = weights[i];
+                rareTotal = rareTotal + weights[i];
+            }
+        }
+        this.live = new Live(build(weights), build(rareWeights), new boolean[size], total, rareTotal, 0, rareIndexes.length);
+
+        //Removes the prizes whose stock is already exhausted
+        for (int i = 0; i < size; i++) {
+            if (StockManager.get(this.prizes[i]).map(StockPool::isExhausted).orElse(false)) {
+                exhaust(i);
+            }
+        }
+    }
+
+    /**
+     * Copies a prize table, the copy exhausting its prizes on its own
+     *
+     * @param sampler the prize table
+     */
+    private PrizeSampler(@Nonnull PrizeSampler sampler) {
+        this.prizes = sampler.prizes;
+        this.fingerprint = sampler.fingerprint;
+        this.weights = sampler.weights;
+        this.rarePositions = sampler.rarePositions;
+        this.rareIndexes = sampler.rareIndexes;
+        this.live = sampler.live;
+    }
+
+    /**
+     * Copies the prize table, with the same exhausted prizes
+     * The live trees are never modified once published, so they are shared until one of the tables exhausts a prize.
+     *
+     * @return the copy
+     */
+    public @Nonnull PrizeSampler copy() {
+        return new PrizeSampler(this);
+    }
+
+    /**
+     * Checks if there is no prize to draw
+     *
+     * @return true if there is no prize or all prizes are exhausted, false otherwise
+     */
+    public boolean isEmpty() {
+        return prizes.length == 0 || live.count() == prizes.length;
+    }
+
+    /**
+     * Gets the number of prizes which are not exhausted
+     *
+     * @return the number of available prizes
+     */
+    public int getAvailable() {
+        return prizes.length - live.count();
+    }
+
+    /**
+     * Removes an exhausted prize from the draws
+     *
+     * @param index the prize index
+     */
+    public synchronized void exhaust(int index) {
+
+        //If the prize is already exhausted, no need to continue
+        if (live.exhausted()[index]) {
+            return;
+        }
+
+        double[] tree = live.tree().clone();
+        boolean[] exhausted = live.exhausted().clone();
+
+        exhausted[index] = true;
+        remove(tree, index, weights[index]);
+
+        //Checks if the prize is not rare, the rare tree is kept as is
+        int position = rarePositions[index];
+        if (position < 0) {
+            live = new Live(tree, live.rareTree(), exhausted, live.total() - weights[index], live.rareTotal(), live.count() + 1, live.rareCount());
+            return;
+        }
+
+        double[] rareTree = live.rareTree().clone();
+        remove(rareTree, position, weights[index]);
+
+        live = new Live(tree, rareTree, exhausted, live.total() - weights[index], live.rareTotal() - weights[index], live.count() + 1, live.rareCount() - 1);
+    }
+
+    /**
+     * Gets the number of prizes
+     *
+     * @return the number of prizes
+     */
+    public int size() {
+        return prizes.length;
+    }
+
+    /**
+     * Checks if a prize is exhausted
+     *
+     * @param index the prize index
+     * @return true if the prize is exhausted, false otherwise
+     */
+    public boolean isExhausted(int index) {
+        return live.exhausted()[index];
+    }
+
+    /**
+     * Gets the fingerprint of the table, changing with its slots, chances and exhausted prizes
+     *
+     * @return the fingerprint
+     */
+    public long getFingerprint() {
+        boolean[] exhausted = live.exhausted();
+
+        long fingerprint = this.fingerprint;
+        for (int i = 0; i < prizes.length; i++) {
+            if (exhausted[i]) {
+                fingerprint = fingerprint * 31 + i;
+            }
+        }
+
+        return fingerprint;
+    }
+
+    /**
+     * Gets a prize by index
+     *
+     * @param index the index
+     * @return the prize
+     */
+    public @Nonnull Prize get(int index) {
+        return prizes[index];
+    }
+
+    /**
+     * Draws a prize index
+     *
+     * @param random a uniform random number in [0, 1)
+     * @return the drawn prize index
+     */
+    public int sampleIndex(double random) {
+        Live live = this.live;
+        BValidate.isTrue(live.count() < prizes.length);
+
+        return getRemaining(find(live.tree(), random * live.total()), live.exhausted());
+    }
+
+    /**
+     * Checks if a prize is rare
+     *
+     * @param index the prize index
+     * @return true if the prize is rare, false otherwise
+     */
+    public boolean isRare(int index) {
+        return rarePositions[index] >= 0;
+    }
+
+    /**
+     * Checks if there is a rare prize to draw
+     *
+     * @return true if there is a rare prize, false otherwise
+     */
+    public boolean hasRare() {
+        return live.rareCount() > 0;
+    }
+
+    /**
+     * Draws a rare prize index, from the rare prizes only
+     *
+     * @param random a uniform random number in [0, 1)
+     * @return the drawn prize index
+     */
+    public int sampleRareIndex(double random) {
+        return sampleRareIndex(live, random);
+    }
+
+    /**
+     * Draws a rare prize index from a live table, from the rare prizes only
+     *
+     * @param live   the live table
+     * @param random a uniform random number in [0, 1)
+     * @return the drawn prize index
+     */
+    private int sampleRareIndex(@Nonnull Live live, double random) {
+        BValidate.isTrue(live.rareCount() > 0);
+
+        //Falls back on the last remaining rare prize if rounding errors pointed past it
+        int position = Math.min(find(live.rareTree(), random * live.rareTotal()), rareIndexes.length - 1);
+        while (position > 0 && live.exhausted()[rareIndexes[position]]) {
+            position--;
+        }
+
+        //Every rare prize before was exhausted, so takes the first one after
+        while (live.exhausted()[rareIndexes[position]]) {
+            position++;
+        }
+
+        return rareIndexes[position];
+    }
+
+    /**
+     * Draws distinct prize indexes, each drawn prize being removed from the table for the next draws
+     *
+     * @param randoms the uniform random numbers in [0, 1), one by draw, at most one by prize
+     * @param rolled  the array receiving the drawn prize indexes
+     * @param offset  the index of the first drawn prize index in the array
+     * @param forced  true if the first prize must be drawn from the rare prizes only
+     */
+    public void sampleDistinct(@Nonnull double[] randoms, @Nonnull int[] rolled, int offset, boolean forced) {
+        BValidate.notNull(randoms);
+        BValidate.notNull(rolled);
+
+        //Works on a copy of the live tree, the table itself is shared
+        Live live = this.live;
+        BValidate.isTrue(randoms.length <= prizes.length - live.count());
+
+        double[] remaining = live.tree().clone();
+        boolean[] removed = live.exhausted().clone();
+        double left = live.total();
+
+        for (int i = 0; i < randoms.length; i++) {
+            int index = getRemaining(i == 0 && forced ? sampleRareIndex(live, randoms[i]) : find(remaining, randoms[i] * left), removed);
+
+            rolled[offset + i] = index;
+            removed[index] = true;
+            left = left - weights[index];
+            remove(remaining, index, weights[index]);
+        }
+    }
+
+    /**
+     * Gets the drawn prize index, or the last remaining one if rounding errors pointed past it
+     *
+     * @param index   the drawn prize index
+     * @param removed the removed prizes
+     * @return the prize index
+     */
+    private int getRemaining(int index, @Nonnull boolean[] removed) {
+        if (index >= prizes.length || removed[index]) {
+            index = prizes.length - 1;
+            while (removed[index]) {
+                index--;
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Builds the Fenwick tree of weights in O(n)
+     *
+     * @param weights the weights
+     * @return the Fenwick tree
+     */
+    private static @Nonnull double[] build(@Nonnull double[] weights) {
+        double[] tree = new double[weights.length + 1];
+
+        for (int i = 0; i < weights.length; i++) {
+            tree[i + 1] = tree[i + 1] + weights[i];
+            int parent = (i + 1) + ((i + 1) & -(i + 1));
+            if (parent <= weights.length) {
+                tree[parent] = tree[parent] + tree[i + 1];
+            }
+        }
+
+        return tree;
+    }
+
+    /**
+     * Removes a weight from a Fenwick tree
+     *
+     * @param tree     the Fenwick tree
+     * @param position the position of the weight
+     * @param weight   the weight
+     */
+    private static void remove(@Nonnull double[] tree, int position, double weight) {
+        for (int node = position + 1; node < tree.length; node += node & -node) {
+            tree[node] = tree[node] - weight;
+        }
+    }
+
+    /**
+     * Finds the position whose cumulative weight range contains the target
+     *
+     * @param tree   the Fenwick tree
+     * @param target the target cumulative weight
+     * @return the position
+     */
+    private static int find(@Nonnull double[] tree, double target) {
+        int size = tree.length - 1;
+        int index = 0;
+
+        for (int step = Integer.highestOneBit(Math.max(1, size)); step > 0; step >>= 1) {
+            if (index + step <= size && tree[index + step] <= target) {
+                index = index + step;
+                target = target - tree[index];
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Draws a prize
+     *
+     * @param random a uniform random number in [0, 1)
+     * @return the drawn prize
+     */
+    public @Nonnull Prize sample(double random) {
+        return prizes[sampleIndex(random)];
+    }
+
+    /**
+     * Gets the probability of a prize to be drawn
+     *
+     * @param index the prize index
+     * @return the probability
+     */
+    public double getProbability(int index) {
+        Live live = this.live;
+
+        return live.exhausted()[index] ? 0 : weights[index] / live.total();
+    }
+
+}
@@ -0,0 +1,139 @@
+package fr.bobinho.bcrate.util.prize.stock;
+
+import fr.bobinho.bcrate.BCrateCore;
+import fr.bobinho.bcrate.api.setting.BSetting;
+import fr.bobinho.bcrate.api.validate.BValidate;
+import fr.bobinho.bcrate.util.crate.Crate;
+import fr.bobinho.bcrate.util.crate.CrateManager;
+import fr.bobinho.bcrate.util.prize.Prize;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Manager class for stock pools
+ * <p>
+ * A prize without stock pool, or whose pool is not defined, is unlimited.
+ * Each taken prize is saved through the write-behind writer, which merges the saves of a burst of opens.
+ */
+public class StockManager {
+
+    /**
+     * Fields
+     */
+    private static final Map<String, StockPool> pools = new ConcurrentHashMap<>();
+    private static final BSetting configuration = BCrateCore.getStockSetting();
+
+    /**
+     * Registers the stock manager
+     */
+    public static void register() {
+        load();
+    }
+
+    /**
+     * Unregisters the stock manager
+     */
+    public static void unregister() {
+        save();
+    }
+
+    /**
+     * Gets a stream of all stock pools
+     *
+     * @return a stream of all stock pools
+     */
+    public static @Nonnull Stream<StockPool> stream() {
+        return pools.values().stream();
+    }
+
+    /**
+     * Gets an optional stock pool
+     *
+     * @param name the name
+     * @return an optional stock pool
+     */
+    public static @Nonnull Optional<StockPool> get(@Nonnull String name) {
+        BValidate.notNull(name);
+
+        return Optional.ofNullable(pools.get(name));
+    }
+
+    /**
+     * Gets the stock pool of a prize
+     *
+     * @param prize the prize
+     * @return the stock pool of the prize, empty if the prize is unlimited
+     */
+    public static @Nonnull Optional<StockPool> get(@Nonnull Prize prize) {
+        BValidate.notNull(prize);
+
+        return prize.stock().get().map(pools::get);
+    }
+
+    /**
+     * Sets the remaining amount of a stock pool, creating it if needed
+     * The prize tables using the pool are compiled again, since the exhausted prizes may be available again.
+     *
+     * @param name      the name
+     * @param remaining the remaining amount
+     */
+    public static void set(@Nonnull String name, int remaining) {
+        BValidate.notNull(name);
+        BValidate.isTrue(remaining >= 0);
+
+        pools.computeIfAbsent(name, pool -> new StockPool(pool, remaining)).setRemaining(remaining);
+        CrateManager.stream()
+                .filter(crate -> crate.prizes().stream().anyMatch(prize -> prize.stock().get().filter(name::equals).isPresent()))
+                .forEach(Crate::invalidateSampler);
+
+        configuration.set(name, remaining);
+        configuration.save();
+    }
+
+    /**
+     * Takes one prize from the stock pool of a prize
+     *
+     * @param prize the prize
+     * @return true if the prize was taken or is unlimited, false if its stock is exhausted
+     */
+    public static boolean take(@Nonnull Prize prize) {
+        BValidate.notNull(prize);
+
+        Optional<StockPool> pool = get(prize);
+
+        //If the prize is unlimited, no need to continue
+        if (pool.isEmpty()) {
+            return true;
+        }
+
+        if (!pool.get().take()) {
+            return false;
+        }
+
+        configuration.set(pool.get().getName(), pool.get().getRemaining());
+        configuration.save();
+        return true;
+    }
+
+    /**
+     * Loads all stock pools
+     */
+    public static void load() {
+        configuration.getKeys().forEach(pool -> configuration.isInt(pool).ifPresent(remaining ->
+                pools.put(pool, new StockPool(pool, Math.max(0, remaining)))));
+    }
+
+    /**
+     * Saves all stock pools
+     */
+    public static void save() {
+        pools.values().forEach(pool -> configuration.set(pool.getName(), pool.getRemaining()));
+
+        configuration.save();
+    }
+
+}
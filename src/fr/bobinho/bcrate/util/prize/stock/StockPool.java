@@ -0,0 +1,91 @@
+package fr.bobinho.bcrate.util.prize.stock;
+
+import fr.bobinho.bcrate.api.validate.BValidate;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class representing a server-wide stock of prizes, possibly shared by prizes of several crates
+ * <p>
+ * The remaining amount is only taken by compare-and-set, so concurrent opens never take more than the stock.
+ */
+public final class StockPool {
+
+    /**
+     * Fields
+     */
+    private final String name;
+    private final AtomicInteger remaining;
+
+    /**
+     * Creates a new stock pool
+     *
+     * @param name      the name
+     * @param remaining the remaining amount
+     */
+    public StockPool(@Nonnull String name, int remaining) {
+        BValidate.notNull(name);
+        BValidate.isTrue(remaining >= 0);
+
+        this.name = name;
+        this.remaining = new AtomicInteger(remaining);
+    }
+
+    /**
+     * Gets the name
+     *
+     * @return the name
+     */
+    public @Nonnull String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the remaining amount
+     *
+     * @return the remaining amount
+     */
+    public int getRemaining() {
+        return remaining.get();
+    }
+
+    /**
+     * Sets the remaining amount
+     *
+     * @param remaining the remaining amount
+     */
+    void setRemaining(int remaining) {
+        BValidate.isTrue(remaining >= 0);
+
+        this.remaining.set(remaining);
+    }
+
+    /**
+     * Checks if the stock is exhausted
+     *
+     * @return true if the stock is exhausted, false otherwise
+     */
+    public boolean isExhausted() {
+        return remaining.get() <= 0;
+    }
+
+    /**
+     * Takes one prize from the stock
+     *
+     * @return true if a prize was taken, false if the stock is exhausted
+     */
+    public boolean take() {
+        int current = remaining.get();
+
+        while (current > 0) {
+            if (remaining.compareAndSet(current, current - 1)) {
+                return true;
+            }
+            current = remaining.get();
+        }
+
+        return false;
+    }
+
+}
@@ -71,4 +71,23 @@ public class Tag {
                 .build();
     }
 
+    /**
+     * Checks if the tag has the same name, so a reloaded tag is equal to the previous one
+     *
+     * @param object the object
+     * @return true if the tag has the same name, false otherwise
+     */
+    @Override
+    public boolean equals(Object object) {
+        return this == object || object instanceof Tag other && name.get().equals(other.name().get());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return name.get().hashCode();
+    }
+
 }
@@ -28,7 +28,18 @@ public class TagManager {
      * Registers the tag manager
      */
     public static void register() {
-        load();
+        register(parse(configuration));
+    }
+
+    /**
+     * Registers the tag manager with already parsed tags
+     *
+     * @param parsed the parsed tags
+     */
+    public static void register(@Nonnull Map<String, Tag> parsed) {
+        BValidate.notNull(parsed);
+
+        tags.putAll(parsed);
     }
 
     /**
@@ -132,17 +143,45 @@ public class TagManager {
         load();
     }
 
+    /**
+     * Replaces all tags by the parsed ones, without saving
+     *
+     * @param parsed the parsed tags
+     */
+    public static void apply(@Nonnull Map<String, Tag> parsed) {
+        BValidate.notNull(parsed);
+
+        tags.clear();
+        tags.putAll(parsed);
+    }
+
     /**
      * Loads all tags
      */
     public static void load() {
+        tags.putAll(parse(configuration));
+    }
+
+    /**
+     * Parses all tags of a setting
+     * May be called from any thread.
+     *
+     * @param setting the setting
+     * @return the parsed tags by name
+     */
+    public static @Nonnull Map<String, Tag> parse(@Nonnull BSetting setting) {
+        BValidate.notNull(setting);
 
-        //Loads all tags
-        configuration.getKeys().forEach(tag -> {
-            String description = configuration.getString(tag + ".description");
+        Map<String, Tag> parsed = new HashMap<>();
 
-            tags.put(tag, new Tag(tag, BColor.color(description)));
+        //Parses all tags
+        setting.getKeys().forEach(tag -> {
+            String description = setting.getString(tag + ".description");
+
+            parsed.put(tag, new Tag(tag, BColor.color(description)));
         });
+
+        return parsed;
     }
 
     /**
@@ -4,6 +4,7 @@ import fr.bobinho.bcrate.api.validate.BValidate;
 
 import javax.annotation.Nonnull;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -18,6 +19,7 @@ public class MultiValuedAttributeRelation<K, V> {
      * Fields
      */
     private final Map<K, V> map;
+    private final Set<K> dirty = new HashSet<>();
 
     /**
      * Creates a new multi-valued attribute relation
@@ -57,6 +59,7 @@ public class MultiValuedAttributeRelation<K, V> {
         BValidate.notNull(value);
 
         map.put(key, value);
+        dirty.add(key);
     }
 
     /**
@@ -68,6 +71,7 @@ public class MultiValuedAttributeRelation<K, V> {
         BValidate.notNull(key);
 
         map.remove(key);
+        dirty.add(key);
     }
 
     /**
@@ -90,6 +94,27 @@ public class MultiValuedAttributeRelation<K, V> {
         return map.keySet();
     }
 
+    /**
+     * Checks if a relation changed since the last poll
+     *
+     * @return true if a relation changed since the last poll, false otherwise
+     */
+    public boolean isDirty() {
+        return !dirty.isEmpty();
+    }
+
+    /**
+     * Gets the keys of the relations changed since the last poll and forgets them
+     *
+     * @return the keys of the relations changed since the last poll
+     */
+    public @Nonnull Set<K> pollDirty() {
+        Set<K> polled = Set.copyOf(dirty);
+        dirty.clear();
+
+        return polled;
+    }
+
     /**
      * Gets a stream of all relations from the multi-valued attribute relation
      *
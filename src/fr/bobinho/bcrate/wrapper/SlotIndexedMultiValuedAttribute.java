@@ -0,0 +1,266 @@
+package fr.bobinho.bcrate.wrapper;
+
+import fr.bobinho.bcrate.api.validate.BValidate;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Wrapper of slot indexed multi-valued attribute
+ * <p>
+ * Each value is stored at its slot in a fixed array, with a bitmap of the occupied slots, so the lookups
+ * and changes by slot are O(1) and the iterations only visit the occupied slots.
+ * The values are also cached in an immutable list, built again only after a change.
+ */
+public class SlotIndexedMultiValuedAttribute<T> {
+
+    /**
+     * Fields
+     */
+    private final ToIntFunction<T> indexer;
+    private Object[] values;
+    private long[] occupied;
+    private int size;
+    private List<T> snapshot;
+
+    /**
+     * Creates a new slot indexed multi-valued attribute
+     *
+     * @param maxSize the number of slots
+     * @param indexer the function giving the slot of a value
+     * @param values  the initial values
+     */
+    public SlotIndexedMultiValuedAttribute(int maxSize, @Nonnull ToIntFunction<T> indexer, @Nonnull List<T> values) {
+        BValidate.notNull(indexer);
+        BValidate.notNull(values);
+        BValidate.isTrue(maxSize >= 0);
+
+        this.indexer = indexer;
+        this.values = new Object[maxSize];
+        this.occupied = new long[(maxSize + 63) >> 6];
+        values.forEach(this::add);
+    }
+
+    /**
+     * Creates a new empty slot indexed multi-valued attribute
+     *
+     * @param maxSize the number of slots
+     * @param indexer the function giving the slot of a value
+     */
+    public SlotIndexedMultiValuedAttribute(int maxSize, @Nonnull ToIntFunction<T> indexer) {
+        this(maxSize, indexer, new ArrayList<>());
+    }
+
+    /**
+     * Gets the values of the multi-valued attribute, by slot order
+     * The list is immutable and shared until the next change.
+     *
+     * @return the values of the multi-valued attribute
+     */
+    public @Nonnull List<T> get() {
+        List<T> current = snapshot;
+
+        if (current == null) {
+            List<T> list = new ArrayList<>(size);
+            forEach(list::add);
+            current = List.copyOf(list);
+            snapshot = current;
+        }
+
+        return current;
+    }
+
+    /**
+     * Gets the value at a slot of the multi-valued attribute
+     *
+     * @param slot the slot
+     * @return the value at the slot, empty if the slot is free
+     */
+    @SuppressWarnings("unchecked")
+    public @Nonnull Optional<T> get(int slot) {
+        if (slot < 0 || slot >= values.length) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable((T) values[slot]);
+    }
+
+    /**
+     * Gets a stream of the multi-valued attribute, by slot order
+     *
+     * @return the stream of the multi-valued attribute
+     */
+    public @Nonnull Stream<T> stream() {
+        return get().stream();
+    }
+
+    /**
+     * Performs an action for each value of the multi-valued attribute, by slot order
+     *
+     * @param action the action
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(@Nonnull Consumer<T> action) {
+        BValidate.notNull(action);
+
+        for (int word = 0; word < occupied.length; word++) {
+            for (long bits = occupied[word]; bits != 0; bits &= bits - 1) {
+                action.accept((T) values[(word << 6) + Long.numberOfTrailingZeros(bits)]);
+            }
+        }
+    }
+
+    /**
+     * Adds a value to the multi-valued attribute, at its slot
+     * The value previously at the slot is replaced.
+     *
+     * @param value the value
+     */
+    public void add(@Nonnull T value) {
+        BValidate.notNull(value);
+
+        int slot = indexer.applyAsInt(value);
+        BValidate.isTrue(slot >= 0 && slot < values.length);
+
+        if (!isOccupied(slot)) {
+            occupied[slot >> 6] |= 1L << slot;
+            size++;
+        }
+        values[slot] = value;
+        snapshot = null;
+    }
+
+    /**
+     * Removes a value from the multi-valued attribute
+     *
+     * @param value the value
+     */
+    public void remove(@Nonnull T value) {
+        BValidate.notNull(value);
+
+        int slot = indexer.applyAsInt(value);
+        if (contains(value)) {
+            remove(slot);
+        }
+    }
+
+    /**
+     * Removes values from the multi-valued attribute
+     *
+     * @param values the values
+     */
+    public void removeAll(@Nonnull List<T> values) {
+        BValidate.notNull(values);
+
+        values.forEach(this::remove);
+    }
+
+    /**
+     * Removes the value at a slot of the multi-valued attribute
+     *
+     * @param slot the slot
+     */
+    public void remove(int slot) {
+
+        //If the slot is free, no need to continue
+        if (!isOccupied(slot)) {
+            return;
+        }
+
+        occupied[slot >> 6] &= ~(1L << slot);
+        values[slot] = null;
+        size--;
+        snapshot = null;
+    }
+
+    /**
+     * Clears the multi-valued attribute
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        Arrays.fill(occupied, 0);
+        size = 0;
+        snapshot = null;
+    }
+
+    /**
+     * Gets the number of values
+     *
+     * @return the number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of slots
+     *
+     * @return the number of slots
+     */
+    public int getMaxSize() {
+        return values.length;
+    }
+
+    /**
+     * Redefines the number of slots, removing the values of the slots beyond
+     *
+     * @param maxSize the number of slots
+     */
+    public void resize(int maxSize) {
+        BValidate.isTrue(maxSize >= 0);
+
+        Object[] oldValues = values;
+        values = new Object[maxSize];
+        occupied = new long[(maxSize + 63) >> 6];
+        size = 0;
+        snapshot = null;
+
+        for (int slot = 0; slot < Math.min(maxSize, oldValues.length); slot++) {
+            if (oldValues[slot] != null) {
+                values[slot] = oldValues[slot];
+                occupied[slot >> 6] |= 1L << slot;
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Checks if all slots are occupied
+     *
+     * @return true if all slots are occupied, false otherwise
+     */
+    public boolean isFull() {
+        return size >= values.length;
+    }
+
+    /**
+     * Checks if a slot is occupied
+     *
+     * @param slot the slot
+     * @return true if the slot is occupied, false otherwise
+     */
+    public boolean isOccupied(int slot) {
+        return slot >= 0 && slot < values.length && (occupied[slot >> 6] & 1L << slot) != 0;
+    }
+
+    /**
+     * Checks if the multi-valued attribute contains an element
+     *
+     * @param element the element
+     * @return true if the multi-valued attribute contains an element, false otherwise
+     */
+    public boolean contains(@Nonnull T element) {
+        BValidate.notNull(element);
+
+        int slot = indexer.applyAsInt(element);
+        return isOccupied(slot) && Objects.equals(values[slot], element);
+    }
+
+}